@@ -0,0 +1,63 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled, which reports the
+ * allocation rate and the normalized allocation per operation alongside the
+ * collection counts and times. Results are written as JSON to the
+ * <code>results</code> directory unless another result file is specified.
+ * Any standard JMH command line option may be supplied, e.g. a regular
+ * expression selecting the benchmarks to run.
+ *
+ * @author hhildebrand
+ *
+ */
+public class Benchmarks {
+    public static final String RESULTS_DIRECTORY = "results";
+
+    public static void main(String[] argv) throws RunnerException,
+	    CommandLineOptionException {
+	CommandLineOptions commandLine = new CommandLineOptions(argv);
+	ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine)
+		.addProfiler(GCProfiler.class);
+	if (commandLine.getIncludes().isEmpty()) {
+	    options.include(Benchmarks.class.getPackage().getName()
+		    + ".*Benchmark");
+	}
+	if (!commandLine.getResult().hasValue()) {
+	    File results = new File(RESULTS_DIRECTORY);
+	    results.mkdirs();
+	    options.resultFormat(ResultFormatType.JSON).result(
+		    new File(results, String.format("%s.json",
+			    new SimpleDateFormat("yyyyMMdd-HHmmss")
+				    .format(new Date()))).getPath());
+	}
+	new Runner(options.build()).run();
+    }
+}
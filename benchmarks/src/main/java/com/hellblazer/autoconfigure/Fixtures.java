@@ -0,0 +1,171 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.hellblazer.slp.ServiceReference;
+import com.hellblazer.slp.ServiceScope;
+import com.hellblazer.slp.ServiceURL;
+
+/**
+ * Shared model fixtures for the benchmarks. Members are created in reverse
+ * order so that canonicalization has real sorting to do.
+ *
+ * @author hhildebrand
+ *
+ */
+public final class Fixtures {
+    /**
+     * A service reference with fixed url, properties and registration
+     */
+    private static class Reference extends ServiceReference {
+	private Reference(ServiceURL url, Map<String, String> properties,
+		UUID registration) {
+	    super(url, properties, registration);
+	}
+    }
+
+    public static final String SERVICE_TYPE = "service:benchmark:tcp";
+
+    /**
+     * Answers the default value of the return type of every method: the
+     * benchmarks never register or discover services through the scope
+     */
+    private static final InvocationHandler INERT_SCOPE = new InvocationHandler() {
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) {
+	    switch (method.getName()) {
+		case "equals":
+		    return proxy == args[0];
+		case "hashCode":
+		    return System.identityHashCode(proxy);
+		case "toString":
+		    return "InertScope";
+		default:
+		    return defaultValue(method.getReturnType());
+	    }
+	}
+    };
+
+    /**
+     * @param members
+     * @return a cluster of the requested number of service models
+     */
+    public static Cluster<Service> cluster(int members) {
+	return new Cluster<>(services(members));
+    }
+
+    /**
+     * @param members
+     * @return service references for the requested number of services
+     */
+    public static List<ServiceReference> references(int members) {
+	List<ServiceReference> references = new ArrayList<>(members);
+	for (Service service : services(members)) {
+	    references.add(new Reference(service.getServiceUrl(), service
+		    .getProperties(), UUID.fromString(service.getProperties()
+		    .get(ServiceScope.SERVICE_REGISTRATION))));
+	}
+	return references;
+    }
+
+    /**
+     * @return a discovery scope that does nothing
+     */
+    public static ServiceScope scope() {
+	return (ServiceScope) Proxy.newProxyInstance(
+		ServiceScope.class.getClassLoader(),
+		new Class<?>[] { ServiceScope.class }, INERT_SCOPE);
+    }
+
+    /**
+     * @param index
+     * @return the service model of a member
+     */
+    public static Service service(int index) {
+	Map<String, String> properties = new HashMap<>();
+	properties.put(ServiceScope.SERVICE_REGISTRATION, UUID.randomUUID()
+		.toString());
+	properties.put("id", String.valueOf(index));
+	return new Service(url(index), properties);
+    }
+
+    /**
+     * @param members
+     * @return the service models of the requested number of members
+     */
+    public static List<Service> services(int members) {
+	List<Service> services = new ArrayList<>(members);
+	for (int i = members - 1; i >= 0; i--) {
+	    services.add(service(i));
+	}
+	return services;
+    }
+
+    /**
+     * @param index
+     * @return the service URL of a member, unique per index
+     */
+    public static ServiceURL url(int index) {
+	try {
+	    return new ServiceURL(String.format("%s://10.%s.%s.%s:%s",
+		    SERVICE_TYPE, (index >> 16) & 0xFF, (index >> 8) & 0xFF,
+		    index & 0xFF, 1024 + index % 60000));
+	} catch (MalformedURLException e) {
+	    throw new IllegalStateException(String.format(
+		    "Invalid service URL for member %s", index), e);
+	}
+    }
+
+    private static Object defaultValue(Class<?> type) {
+	if (!type.isPrimitive() || type == void.class) {
+	    return null;
+	}
+	if (type == boolean.class) {
+	    return false;
+	}
+	if (type == char.class) {
+	    return '\0';
+	}
+	if (type == long.class) {
+	    return 0L;
+	}
+	if (type == float.class) {
+	    return 0F;
+	}
+	if (type == double.class) {
+	    return 0D;
+	}
+	if (type == byte.class) {
+	    return (byte) 0;
+	}
+	if (type == short.class) {
+	    return (short) 0;
+	}
+	return 0;
+    }
+
+    private Fixtures() {
+    }
+}
@@ -0,0 +1,130 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.stringtemplate.v4.AutoIndentWriter;
+import org.stringtemplate.v4.ST;
+
+import com.hellblazer.autoconfigure.configuration.Configuration;
+import com.hellblazer.autoconfigure.configuration.Template;
+import com.hellblazer.utils.TemporaryDirectory;
+
+/**
+ * Measures the generation of a configuration from a template group rendering
+ * every member of a cluster. The <code>generate</code> benchmark includes
+ * writing the output through the {@link ConfigurationWriter}, using group
+ * commit so that the measurement is not dominated by fsync; the
+ * <code>render</code> benchmark isolates the template evaluation.
+ *
+ * @author hhildebrand
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class GenerateBenchmark {
+    private static final String TEMPLATE_GROUP = "cluster(configuredService, members, threads) ::= <<\n"
+	    + "self=<configuredService.host>:<configuredService.port>\n"
+	    + "threads=<threads>\n"
+	    + "size=<members.cardinality>\n"
+	    + "<members.members:{ m | server.<m.id>=<m.host>:<m.port>}; separator=\"\\n\">\n"
+	    + ">>\n";
+
+    @Param({ "1", "10", "100", "1000", "10000" })
+    public int members;
+
+    private AutoConfigure autoConfigure;
+    private TemporaryDirectory directory;
+    private Template template;
+    private Service thisService;
+    private Map<String, Object> variables;
+
+    @Benchmark
+    public boolean generate() throws IOException {
+	ConfigurationWriter writer = new ConfigurationWriter(true);
+	try {
+	    return autoConfigure.generate(template, thisService, variables,
+		    writer);
+	} finally {
+	    writer.abort();
+	}
+    }
+
+    @Benchmark
+    public int render() throws IOException {
+	ST st = TemplateGroupCache.getDefault()
+		.get(template.templateGroup).getInstanceOf(template.template);
+	st.add(template.thisServiceName, thisService);
+	for (Map.Entry<String, Object> entry : variables.entrySet()) {
+	    st.add(entry.getKey(), entry.getValue());
+	}
+	StringWriter out = new StringWriter();
+	st.write(new AutoIndentWriter(out));
+	return out.getBuffer().length();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+	directory = new TemporaryDirectory("generate-benchmark", "dir");
+	File group = new File(directory.directory, "cluster.stg");
+	Files.write(group.toPath(),
+		TEMPLATE_GROUP.getBytes(Charset.forName("UTF-8")));
+
+	template = new Template();
+	template.name = "cluster";
+	template.template = "cluster";
+	template.templateGroup = group.getAbsolutePath();
+	template.generated = new File(directory.directory, "cluster.conf");
+
+	Configuration config = new Configuration();
+	config.templates.add(template);
+	autoConfigure = new AutoConfigure(config, Fixtures.scope());
+
+	thisService = Fixtures.service(Integer.MAX_VALUE);
+	variables = new HashMap<>();
+	variables.put("members", Fixtures.cluster(members));
+	variables.put("threads", "5");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+	directory.close();
+    }
+}
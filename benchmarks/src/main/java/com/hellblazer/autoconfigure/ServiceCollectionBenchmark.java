@@ -0,0 +1,85 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hellblazer.autoconfigure.configuration.ServiceCollection;
+import com.hellblazer.slp.ServiceReference;
+
+/**
+ * Measures the discovery of the members of a service collection, and the
+ * sorting and canonicalization of the members into a cluster.
+ *
+ * @author hhildebrand
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ServiceCollectionBenchmark {
+    @Param({ "1", "10", "100", "1000", "10000" })
+    public int members;
+
+    private ServiceCollection populated;
+    private List<ServiceReference> references;
+
+    @Benchmark
+    public ServiceCollection discover() {
+	ServiceCollection collection = collection();
+	for (ServiceReference reference : references) {
+	    collection.discover(reference);
+	}
+	return collection;
+    }
+
+    @Benchmark
+    public Cluster<Service> getCluster() {
+	return populated.getCluster();
+    }
+
+    @Setup
+    public void setup() {
+	references = Fixtures.references(members);
+	populated = collection();
+	for (ServiceReference reference : references) {
+	    populated.discover(reference);
+	}
+    }
+
+    private ServiceCollection collection() {
+	ServiceCollection collection = new ServiceCollection();
+	collection.service = Fixtures.SERVICE_TYPE;
+	collection.variable = "members";
+	collection.cardinality = members;
+	return collection;
+    }
+}
@@ -0,0 +1,75 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the property access of the service model adaptor, as performed by
+ * StringTemplate for every <code>&lt;service.property&gt;</code> expression.
+ *
+ * @author hhildebrand
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ServiceModelAdaptorBenchmark {
+    private ServiceModelAdaptor adaptor;
+    private ServiceModelAdaptor defaulting;
+    private Service service;
+
+    @Benchmark
+    public Object host() {
+	return adaptor.getProperty(null, null, service, "host", "host");
+    }
+
+    @Benchmark
+    public Object missingProperty() {
+	return defaulting.getProperty(null, null, service, "missing",
+		"missing");
+    }
+
+    @Benchmark
+    public Object port() {
+	return adaptor.getProperty(null, null, service, "port", "port");
+    }
+
+    @Benchmark
+    public Object serviceProperty() {
+	return adaptor.getProperty(null, null, service, "id", "id");
+    }
+
+    @Setup
+    public void setup() {
+	adaptor = new ServiceModelAdaptor();
+	defaulting = new ServiceModelAdaptor("");
+	service = Fixtures.service(1);
+    }
+}
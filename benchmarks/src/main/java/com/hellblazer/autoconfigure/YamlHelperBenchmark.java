@@ -0,0 +1,77 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hellblazer.autoconfigure.configuration.Configuration;
+import com.hellblazer.autoconfigure.configuration.YamlHelper;
+
+/**
+ * Measures the parsing of a representative auto configuration YAML file. The
+ * file is read into memory once, so only the parsing and binding is measured.
+ *
+ * @author hhildebrand
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class YamlHelperBenchmark {
+    public static final String CONFIGURATION = "autoconfigure.yml";
+
+    private byte[] yaml;
+
+    @Benchmark
+    public Configuration fromYaml() throws IOException {
+	return YamlHelper.fromYaml(new ByteArrayInputStream(yaml));
+    }
+
+    @Setup
+    public void setup() throws IOException {
+	ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	try (InputStream is = getClass().getClassLoader().getResourceAsStream(
+		CONFIGURATION)) {
+	    if (is == null) {
+		throw new IllegalStateException(String.format(
+			"Cannot find benchmark configuration [%s]",
+			CONFIGURATION));
+	    }
+	    byte[] chunk = new byte[4096];
+	    for (int read = is.read(chunk); read >= 0; read = is.read(chunk)) {
+		buffer.write(chunk, 0, read);
+	    }
+	}
+	yaml = buffer.toByteArray();
+    }
+}
@@ -16,23 +16,29 @@ package com.hellblazer.autoconfigure;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Writer;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.NetworkInterface;
 import java.net.SocketException;
-import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -41,17 +47,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.stringtemplate.v4.ST;
 import org.stringtemplate.v4.STGroup;
-import org.stringtemplate.v4.STGroupFile;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hellblazer.autoconfigure.configuration.Configuration;
 import com.hellblazer.autoconfigure.configuration.JmxConfiguration;
 import com.hellblazer.autoconfigure.configuration.RestartState;
+import com.hellblazer.autoconfigure.configuration.RestartState.ServiceState;
 import com.hellblazer.autoconfigure.configuration.ServiceCollection;
 import com.hellblazer.autoconfigure.configuration.SingletonService;
 import com.hellblazer.autoconfigure.configuration.Template;
 import com.hellblazer.autoconfigure.configuration.UniqueDirectory;
+import com.hellblazer.autoconfigure.configuration.VariableSupplier;
+import com.hellblazer.autoconfigure.configuration.YamlHelper;
 import com.hellblazer.autoconfigure.jmx.JmxDiscovery;
+import com.hellblazer.autoconfigure.jmx.LifecycleMonitor;
+import com.hellblazer.autoconfigure.jmx.Phase;
 import com.hellblazer.gossip.configuration.GossipConfiguration;
 import com.hellblazer.nexus.GossipScope;
 import com.hellblazer.slp.InvalidSyntaxException;
@@ -60,8 +69,6 @@ import com.hellblazer.slp.ServiceListener;
 import com.hellblazer.slp.ServiceReference;
 import com.hellblazer.slp.ServiceScope;
 import com.hellblazer.slp.ServiceURL;
-import com.hellblazer.utils.LabeledThreadFactory;
-import com.hellblazer.utils.Rendezvous;
 import com.hellblazer.utils.Utils;
 
 /**
@@ -72,43 +79,76 @@ import com.hellblazer.utils.Utils;
  * 
  */
 public class AutoConfigure {
+    public static final String GOSSIP_SEEDS = "gossipSeeds";
+
     private static final Logger logger = LoggerFactory
 	    .getLogger(AutoConfigure.class);
+    private static ScheduledExecutorService sharedScheduler;
 
+    /**
+     * @param service
+     *            - the service type
+     * @param properties
+     *            - the required property values of the service
+     * @return the query filter for the service, with the values escaped
+     */
     public static String constructFilter(String service,
 	    Map<String, String> properties) {
-	StringBuilder builder = new StringBuilder();
-	builder.append('(');
-	if (properties.size() != 0) {
-	    builder.append(" &(");
-	}
-	builder.append(String.format("%s=%s", ServiceScope.SERVICE_TYPE,
-		service));
-	if (properties.size() != 0) {
-	    builder.append(")");
-	}
-	for (Map.Entry<String, String> entry : properties.entrySet()) {
-	    builder.append(String.format(" (%s=%s) ", entry.getKey(),
-		    entry.getValue()));
+	return ServiceFilter.builder(service).properties(properties).build()
+		.toString();
+    }
+
+    /**
+     * @return the daemon scheduler shared by all the instances in the process
+     *         that have not been supplied with a scheduler. The scheduler only
+     *         triggers timed actions, which are run off its thread.
+     */
+    public static synchronized ScheduledExecutorService getSharedScheduler() {
+	if (sharedScheduler == null) {
+	    sharedScheduler = Executors
+		    .newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+			    Thread daemon = new Thread(r,
+				    "Auto Configuration Scheduling Thread");
+			    daemon.setDaemon(true);
+			    return daemon;
+			}
+		    });
 	}
-	builder.append(')');
-	return builder.toString();
+	return sharedScheduler;
     }
 
     private final Map<String, String> additionalPorts = new HashMap<>();
 
     private final AtomicReference<InetSocketAddress> bound = new AtomicReference<>();
     private final Configuration config;
+    private final AtomicBoolean configured = new AtomicBoolean();
+    private final AtomicReference<AutoConfigureService> configuredService = new AtomicReference<>();
     private final ServiceScope discovery;
     private final Map<String, String> environment = new HashMap<>();
+    private final LifecycleEvents events = LifecycleEvents.load();
     private final AtomicBoolean failed = new AtomicBoolean();;
     private final Map<String, File> generatedConfigurations = new HashMap<>();
+    private final Map<String, String> generatedDigests = new ConcurrentHashMap<>();
     private final JmxDiscovery jmxDiscovery;
+    private final AtomicReference<Service> lastModel = new AtomicReference<>();
+    private final AtomicReference<Map<String, Object>> lastVariables = new AtomicReference<>();
+    private final LifecycleExecutor lifecycle;
+    private final LifecycleMonitor monitor;
+    private final boolean ownsDiscovery;
+    private final AtomicReference<Runnable> quorumPending = new AtomicReference<>();
+    private final List<ServiceListener> registeredListeners = new CopyOnWriteArrayList<>();
     private final Map<String, String> registeredServiceProperties = new HashMap<>();
-    private final AtomicReference<Rendezvous> rendezvous = new AtomicReference<>();
+    private final AtomicReference<DiscoveryRendezvous> rendezvous = new AtomicReference<>();
+    private final AtomicReference<PortReservation> reservation = new AtomicReference<>();
     private final Map<ServiceListener, ServiceCollection> serviceCollections = new HashMap<>();
     private final AtomicReference<UUID> serviceRegistration = new AtomicReference<>();
     private final Map<ServiceListener, SingletonService> singletonServices = new HashMap<>();
+    private ForkJoinPool renderPool;
+    private ConfigurationWatcher watcher;
+    private final ScheduledExecutorService scheduler;
+    private final TemplateGroupCache templateGroups;
 
     private final AtomicReference<ServiceURL> thisService = new AtomicReference<>();
 
@@ -135,8 +175,51 @@ public class AutoConfigure {
      *             - if the discovery service cannot be constructed
      */
     public AutoConfigure(Configuration config, ServiceScope discovery) {
+	this(config, discovery, null);
+    }
+
+    /**
+     * Construct an instance from the configuration POJO
+     * 
+     * @param config
+     *            - the configuration to use
+     * @param discovery
+     *            - the service discovery scope to use
+     * @param scheduler
+     *            - the scheduler used to time out the auto configuration
+     *            process, or null to use the shared scheduler. The scheduler
+     *            is not shut down by this instance.
+     */
+    public AutoConfigure(Configuration config, ServiceScope discovery,
+	    ScheduledExecutorService scheduler) {
+	this(config, discovery, scheduler, true);
+    }
+
+    /**
+     * Construct an instance from the configuration POJO
+     * 
+     * @param config
+     *            - the configuration to use
+     * @param discovery
+     *            - the service discovery scope to use
+     * @param scheduler
+     *            - the scheduler used to time out the auto configuration
+     *            process, or null to use the shared scheduler. The scheduler
+     *            is not shut down by this instance.
+     * @param ownsDiscovery
+     *            - if true, the discovery scope is started by this instance
+     *            and stopped when it is shut down. Otherwise the lifecycle of
+     *            the scope is managed by the caller, e.g. when the scope is
+     *            shared by several instances.
+     */
+    public AutoConfigure(Configuration config, ServiceScope discovery,
+	    ScheduledExecutorService scheduler, boolean ownsDiscovery) {
 	this.config = config;
 	this.discovery = discovery;
+	this.ownsDiscovery = ownsDiscovery;
+	this.scheduler = scheduler == null ? getSharedScheduler() : scheduler;
+	lifecycle = LifecycleExecutor.create(config.executionMode,
+		config.lifecyclePoolSize);
 
 	for (SingletonService service : config.services) {
 	    singletonServices.put(serviceListener(), service);
@@ -150,8 +233,16 @@ public class AutoConfigure {
 	for (Template template : config.templates) {
 	    generatedConfigurations.put(template.name, template.generated);
 	}
+	templateGroups = TemplateGroupCache.getDefault(config.missingProperty);
+	for (Template template : config.templates) {
+	    templateGroups.prefill(template.templateGroup);
+	}
 	jmxDiscovery = new JmxDiscovery(config.jmx, discovery);
-	this.discovery.start();
+	monitor = new LifecycleMonitor(config.services,
+		config.serviceCollections);
+	if (ownsDiscovery) {
+	    this.discovery.start();
+	}
     }
 
     /**
@@ -254,6 +345,7 @@ public class AutoConfigure {
     public void configure(Map<String, String> environment,
 	    AutoConfigureService configuredService, long timeout, TimeUnit unit) {
 	File restartFile = new File(config.restartStateFile);
+	monitor.register(config.serviceUrl, restartFile.getAbsolutePath());
 	if (restartFile.exists()) {
 	    restart(configuredService);
 	    return;
@@ -262,13 +354,16 @@ public class AutoConfigure {
 	    environment = Collections.emptyMap();
 	}
 	this.environment.putAll(environment);
+	this.configuredService.set(configuredService);
 	logger.info(String.format("Using runtime property overrides %s",
 		environment));
 	logger.info("Beginning auto configuration process");
-	Runnable successAction = successAction(configuredService);
+	Runnable successAction = lifecycle
+		.onExecutor(successAction(configuredService));
 	int cardinality = getCardinality();
-	if (!rendezvous.compareAndSet(null, new Rendezvous(cardinality,
-		successAction, failureAction(configuredService)))) {
+	if (!rendezvous.compareAndSet(null, new DiscoveryRendezvous(cardinality,
+		quorumAction(successAction), lifecycle
+			.onExecutor(failureAction(configuredService))))) {
 	    throw new IllegalStateException("System is already configuring!");
 	}
 	try {
@@ -277,6 +372,8 @@ public class AutoConfigure {
 	    logger.error("Unable to register this service!", e);
 	    failed.set(true);
 	    try {
+		releasePorts();
+		monitor.failed();
 		configuredService.fail(generatedConfigurations);
 	    } catch (Exception e1) {
 		logger.info(
@@ -292,14 +389,9 @@ public class AutoConfigure {
 	    return;
 	}
 
-	rendezvous
-		.get()
-		.scheduleCancellation(
-			timeout,
-			unit,
-			Executors
-				.newSingleThreadScheduledExecutor(new LabeledThreadFactory(
-					"Auto Configuration Scheduling Thread")));
+	rendezvous.get().scheduleCancellation(timeout, unit, scheduler,
+		lifecycle.detached());
+	monitor.discovering(rendezvous.get(), timeout, unit);
 	try {
 	    registerListeners();
 	} catch (Throwable e) {
@@ -307,6 +399,8 @@ public class AutoConfigure {
 	    failed.set(true);
 	    rendezvous.get().cancel();
 	    try {
+		releasePorts();
+		monitor.failed();
 		configuredService.fail(generatedConfigurations);
 	    } catch (Exception e1) {
 		logger.error(
@@ -316,6 +410,49 @@ public class AutoConfigure {
 	}
     }
 
+    /**
+     * Run the auto configuration process asynchronously. The result is the
+     * map of template names to generated configuration files; the future
+     * completes exceptionally if the configuration fails or times out, and
+     * cancelling the future cancels the configuration process.
+     * 
+     * @param environment
+     *            - a map of variables that override any configured variables
+     * @param timeout
+     *            - the length of time to wait for auto configuration to
+     *            complete
+     * @param unit
+     *            - the unit of the wait time
+     * @return the future result of the configuration
+     */
+    public ConfigurationFuture configureAsync(Map<String, String> environment,
+	    long timeout, TimeUnit unit) {
+	final ConfigurationFuture future = new ConfigurationFuture(
+		new Runnable() {
+		    @Override
+		    public void run() {
+			DiscoveryRendezvous current = rendezvous.get();
+			if (current != null) {
+			    current.cancel();
+			}
+		    }
+		});
+	configure(environment, new AutoConfigureService(this) {
+	    @Override
+	    public void fail(Map<String, File> configurations) {
+		future.fail(new IllegalStateException(String.format(
+			"Auto configuration failed, configurations %s",
+			configurations)));
+	    }
+
+	    @Override
+	    public void succeed(Map<String, File> configurations) {
+		future.complete(configurations);
+	    }
+	}, timeout, unit);
+	return future;
+    }
+
     public ServiceScope getDiscoveryScope() {
 	return discovery;
     }
@@ -324,30 +461,412 @@ public class AutoConfigure {
 	return generatedConfigurations;
     }
 
+    /**
+     * Answer the current view of the discovered service collections. After a
+     * restart, this is the membership restored from the restart state until
+     * it has been validated against discovery.
+     * 
+     * @return the map of service collection variables to their members
+     */
+    public Map<String, Cluster<Service>> getMembership() {
+	Map<String, Cluster<Service>> membership = new HashMap<>();
+	for (ServiceCollection collection : serviceCollections.values()) {
+	    if (collection.variable != null) {
+		membership.put(collection.variable, new Cluster<>(
+			new ArrayList<>(collection.getMembers())));
+	    }
+	}
+	return membership;
+    }
+
     public void shutdown() {
+	synchronized (this) {
+	    if (renderPool != null) {
+		renderPool.shutdown();
+	    }
+	    if (watcher != null) {
+		watcher.close();
+	    }
+	}
+	withdraw();
+	lifecycle.shutdown();
+	releasePorts();
+	monitor.unregister();
 	try {
 	    jmxDiscovery.shutdown();
 	} catch (IOException e) {
 	    logger.trace("");
 	}
-	discovery.stop();
+	if (ownsDiscovery) {
+	    discovery.stop();
+	}
+    }
+
+    /**
+     * Apply a reloaded configuration to the configured service. Only the
+     * changes to the substitution variables, the templates and the service
+     * properties are applied: the configurations affected by the changes are
+     * regenerated, and the changed service properties are republished. Any
+     * other change requires the service to be restarted.
+     * <p>
+     * The reloaded state is built on copies of the running state, and only
+     * replaces it once the regenerated configurations have been committed. If
+     * regeneration fails, the running configuration is left unchanged, and
+     * the reloaded configuration must be applied again.
+     * 
+     * @param reloaded
+     *            - the reloaded configuration
+     * @return false if the reloaded configuration has not been applied, either
+     *         because the service has not yet been configured, or because the
+     *         configurations could not be regenerated, and it must be applied
+     *         again later
+     */
+    public synchronized boolean reload(Configuration reloaded) {
+	Map<String, Object> variables = lastVariables.get();
+	Service model = lastModel.get();
+	if (!configured.get() || variables == null || model == null) {
+	    logger.info("Deferring reloaded configuration, the service has not been configured");
+	    return false;
+	}
+	ConfigurationDelta delta = ConfigurationDelta.between(config, reloaded);
+	if (delta.isEmpty()) {
+	    logger.info("Reloaded configuration does not change the configured service");
+	    return true;
+	}
+	logger.info(String.format("Applying reloaded configuration %s", delta));
+
+	Map<String, String> properties = null;
+	if (delta.isPropertiesChanged()) {
+	    properties = publishedProperties(delta);
+	    model = new Service(model.getServiceUrl(), properties);
+	}
+
+	List<Template> templates = new ArrayList<>(config.templates);
+	templates.removeAll(delta.getRemovedTemplates());
+	for (Template added : delta.getAddedTemplates()) {
+	    templateGroups.prefill(added.templateGroup);
+	    templates.add(added);
+	}
+
+	Map<String, String> configuredVariables = reloaded.variables == null ? new HashMap<String, String>()
+		: reloaded.variables;
+	variables = new HashMap<>(variables);
+	for (String variable : delta.getChangedVariables()) {
+	    if (environment.containsKey(variable)) {
+		logger.info(String.format(
+			"Variable [%s] is overridden by the environment",
+			variable));
+		continue;
+	    }
+	    String value = configuredVariables.get(variable);
+	    if (value == null) {
+		variables.remove(variable);
+	    } else {
+		variables.put(variable, value);
+	    }
+	}
+
+	Map<String, File> changed = new HashMap<>();
+	Map<String, String> digests = new HashMap<>();
+	for (Template template : templates) {
+	    String key = template.generated.getAbsolutePath();
+	    digests.put(key, generatedDigests.get(key));
+	}
+	ConfigurationWriter writer = new ConfigurationWriter(config.groupCommit);
+	try {
+	    Set<String> unresolved = requiredVariables(templates);
+	    unresolved.removeAll(variables.keySet());
+	    if (!unresolved.isEmpty()) {
+		Map<String, Object> resolved = resolveVariables(templates,
+			configuredVariables);
+		for (String variable : unresolved) {
+		    if (resolved.containsKey(variable)) {
+			variables.put(variable, resolved.get(variable));
+		    }
+		}
+	    }
+	    for (Template template : templates) {
+		if (isAffected(template, delta)
+			&& generate(template, model, variables, writer)) {
+		    changed.put(template.name, template.generated);
+		}
+	    }
+	    writer.commit();
+	} catch (Throwable e) {
+	    writer.abort();
+	    for (Map.Entry<String, String> digest : digests.entrySet()) {
+		if (digest.getValue() == null) {
+		    generatedDigests.remove(digest.getKey());
+		} else {
+		    generatedDigests.put(digest.getKey(), digest.getValue());
+		}
+	    }
+	    logger.error(
+		    "Unable to regenerate configurations after reload, the running configuration is unchanged",
+		    e);
+	    return false;
+	}
+
+	if (properties != null) {
+	    publish(delta, properties);
+	    config.serviceProperties = reloaded.serviceProperties;
+	}
+	for (Template removed : delta.getRemovedTemplates()) {
+	    generatedConfigurations.remove(removed.name);
+	    generatedDigests.remove(removed.generated.getAbsolutePath());
+	}
+	for (Template added : delta.getAddedTemplates()) {
+	    generatedConfigurations.put(added.name, added.generated);
+	}
+	config.templates = templates;
+	config.variables = configuredVariables;
+	lastModel.set(model);
+	lastVariables.set(variables);
+	try {
+	    saveRestartState();
+	} catch (Throwable e) {
+	    logger.error("Unable to save restart state after reload", e);
+	}
+	if (changed.isEmpty()) {
+	    logger.info("Reloaded configuration did not change any configuration");
+	    return true;
+	}
+	logger.info(String.format(
+		"Reloaded configuration regenerated configurations %s",
+		changed.keySet()));
+	try {
+	    configuredService.get().reconfigured(changed);
+	} catch (Throwable e) {
+	    logger.error(
+		    "Exception encountered during the running reconfiguration action",
+		    e);
+	}
+	return true;
+    }
+
+    /**
+     * Watch the configuration file, reloading the configuration each time the
+     * file changes. The file is only watched if the configuration enables hot
+     * reloading.
+     * 
+     * @param configurationFile
+     *            - the configuration YAML file
+     */
+    public synchronized void watch(File configurationFile) {
+	if (!config.hotReload || watcher != null) {
+	    return;
+	}
+	try {
+	    watcher = new ConfigurationWatcher(configurationFile,
+		    new ConfigurationWatcher.Reload() {
+			@Override
+			public boolean reload(Configuration configuration) {
+			    return AutoConfigure.this.reload(configuration);
+			}
+		    });
+	} catch (IOException e) {
+	    logger.warn(String.format(
+		    "Unable to watch configuration file [%s]",
+		    configurationFile), e);
+	    return;
+	}
+	logger.info(String.format("Watching configuration file [%s]",
+		configurationFile));
+	watcher.start();
+    }
+
+    /**
+     * Add the listener to the discovery scope, dispatched through the
+     * lifecycle executor. The dispatching listener is retained, so that it can
+     * be removed when this instance is shut down.
+     * 
+     * @param listener
+     * @param filter
+     * @throws InvalidSyntaxException
+     */
+    private void addServiceListener(ServiceListener listener, String filter)
+	    throws InvalidSyntaxException {
+	ServiceListener dispatching = lifecycle.dispatching(listener);
+	discovery.addServiceListener(dispatching, filter);
+	registeredListeners.add(dispatching);
+    }
+
+    /**
+     * Withdraw this instance from the discovery scope, removing its service
+     * listeners and unregistering its service. A shared scope outlives this
+     * instance, so this must be done whether or not the scope is stopped.
+     */
+    private void withdraw() {
+	for (ServiceListener listener : registeredListeners) {
+	    discovery.removeServiceListener(listener);
+	}
+	registeredListeners.clear();
+	UUID registration = serviceRegistration.getAndSet(null);
+	if (registration != null) {
+	    logger.info(String.format("Unregistering service [%s]",
+		    thisService.get()));
+	    discovery.unregister(registration);
+	}
+    }
+
+    /**
+     * Apply any change to the watched configuration file made before the
+     * service was configured
+     */
+    private void reloadDeferred() {
+	ConfigurationWatcher current;
+	synchronized (this) {
+	    current = watcher;
+	}
+	if (current != null) {
+	    current.poll();
+	}
+    }
+
+    /**
+     * @param template
+     * @param delta
+     * @return true if the configuration generated by the template is affected
+     *         by the reloaded configuration
+     */
+    private boolean isAffected(Template template, ConfigurationDelta delta) {
+	if (delta.getAddedTemplates().contains(template)) {
+	    return true;
+	}
+	Set<String> arguments = templateGroups.getFormalArguments(
+		template.templateGroup, template.template);
+	if (arguments == null) {
+	    return false;
+	}
+	return !Collections.disjoint(arguments, delta.getChangedVariables())
+		|| (delta.isPropertiesChanged() && arguments
+			.contains(template.thisServiceName));
+    }
+
+    /**
+     * Republish the service properties of the registered service
+     * 
+     * @param delta
+     * @param updated
+     *            - the updated properties of the registered service
+     */
+    private void publish(ConfigurationDelta delta, Map<String, String> updated) {
+	registeredServiceProperties.putAll(delta.getChangedProperties());
+	registeredServiceProperties.keySet().removeAll(
+		delta.getRemovedProperties());
+	discovery.setProperties(serviceRegistration.get(), updated);
+	events.propertiesPublished(serviceRegistration.get(), updated.size());
+    }
+
+    /**
+     * @param delta
+     * @return the properties of the registered service, updated with the
+     *         changed service properties
+     */
+    private Map<String, String> publishedProperties(ConfigurationDelta delta) {
+	ServiceReference reference = discovery
+		.getReference(serviceRegistration.get());
+	Map<String, String> updated = new HashMap<>(
+		reference == null ? registeredServiceProperties : reference
+			.getProperties());
+	updated.putAll(delta.getChangedProperties());
+	updated.keySet().removeAll(delta.getRemovedProperties());
+	return updated;
+    }
+
+    /**
+     * Note the arrival of a distinct required service at the rendezvous
+     *
+     * @param reference
+     */
+    private void arrive(ServiceReference reference) {
+	DiscoveryRendezvous current = rendezvous.get();
+	if (current == null) {
+	    logger.trace(String.format("No rendezvous for [%s]",
+		    reference.getUrl()));
+	    return;
+	}
+	if (current.isCompleted() || current.isCancelled()) {
+	    logger.info(String.format("Rendezvous already completed: %s",
+		    reference.getUrl()));
+	    return;
+	}
+	current.arrive();
+	events.rendezvousArrival(reference.getUrl(), current.getRemaining());
+    }
+
+    /**
+     * Run the deferred success action, if it has not already been run
+     */
+    private void proceedWithQuorum() {
+	Runnable action = quorumPending.getAndSet(null);
+	if (action != null) {
+	    action.run();
+	}
+    }
+
+    /**
+     * Schedule the action. The scheduler only triggers the action, which is
+     * run off the scheduling thread, as the scheduler may be shared by every
+     * instance in the process.
+     * 
+     * @param action
+     * @param delay
+     * @param unit
+     */
+    private void schedule(final Runnable action, long delay, TimeUnit unit) {
+	final Executor executor = lifecycle.detached();
+	scheduler.schedule(new Runnable() {
+	    @Override
+	    public void run() {
+		executor.execute(action);
+	    }
+	}, delay, unit);
+    }
+
+    /**
+     * Claim the reserved ports, handing them off to the configured service
+     * 
+     * @return the map of port names to the bound channels
+     */
+    private Map<String, ServerSocketChannel> claimPorts() {
+	PortReservation reserved = reservation.getAndSet(null);
+	if (reserved == null) {
+	    return Collections.emptyMap();
+	}
+	return reserved.claim();
+    }
+
+    /**
+     * Release any reserved ports that have not been claimed by the configured
+     * service
+     */
+    private void releasePorts() {
+	PortReservation reserved = reservation.getAndSet(null);
+	if (reserved != null) {
+	    reserved.close();
+	}
     }
 
     /**
      * Restart the service
+     * 
+     * @return the restart state
      */
-    private void restart() {
-	ObjectMapper mapper = new ObjectMapper();
+    private RestartState restart() {
 	RestartState state;
+	Object read = events.beginRestartState();
 	try (FileInputStream fis = new FileInputStream(config.restartStateFile)) {
-	    state = mapper.readValue(fis, RestartState.class);
+	    state = YamlHelper.jsonReader(RestartState.class).readValue(fis);
 	} catch (IOException e) {
 	    throw new IllegalStateException("Cannot read restart state", e);
 	}
+	events.endRestartState(read, config.restartStateFile, false);
 	ServiceURL url;
 	try {
 	    url = new ServiceURL(state.serviceURL);
-	    discovery.register(url, state.serviceProperties);
+	    serviceRegistration.set(discovery.register(url,
+		    state.serviceProperties));
 	} catch (MalformedURLException e) {
 	    throw new IllegalStateException(String.format(
 		    "Unable to reconstruct service URL: %s", state.serviceURL),
@@ -359,24 +878,134 @@ public class AutoConfigure {
 			    config.restartStateFile, state.serviceProperties,
 			    state.serviceProperties));
 	}
-	bound.set(new InetSocketAddress(url.getHost(), url.getPort()));
-	return;
+	if (state.hostAddress == null) {
+	    bound.set(new InetSocketAddress(url.getHost(), url.getPort()));
+	} else {
+	    bound.set(new InetSocketAddress(HostAddressResolver.named(
+		    url.getHost(), state.hostAddress), url.getPort()));
+	}
+	restoreMembership(state);
+	return state;
+    }
+
+    /**
+     * Restore the membership of the discovered services saved with the restart
+     * state, as the initial view of the cluster. The restored membership is
+     * validated against discovery in the background.
+     * 
+     * @param state
+     *            - the restart state
+     */
+    private void restoreMembership(RestartState state) {
+	for (ServiceCollection collection : serviceCollections.values()) {
+	    List<ServiceState> members = state.collectionMembers == null ? null
+		    : state.collectionMembers.get(collection.constructFilter());
+	    if (members != null) {
+		List<Service> restored = new ArrayList<>();
+		for (ServiceState member : members) {
+		    restored.add(member.toService());
+		}
+		collection.restore(restored);
+		logger.info(String.format(
+			"Restored %s members of service collection [%s]",
+			restored.size(), collection));
+	    }
+	    if (!config.reconfigure) {
+		collection.seal();
+	    }
+	}
+	for (SingletonService service : singletonServices.values()) {
+	    ServiceState restored = state.singletonMembers == null ? null
+		    : state.singletonMembers.get(service.constructFilter());
+	    if (restored != null) {
+		service.restore(restored.toService());
+		logger.info(String.format("Restored service [%s] as [%s]",
+			service, restored.serviceURL));
+	    }
+	}
+    }
+
+    /**
+     * Save the membership of the discovered services in the restart state
+     * 
+     * @param state
+     *            - the restart state
+     */
+    private void saveMembership(RestartState state) {
+	state.collectionMembers = new HashMap<>();
+	for (ServiceCollection collection : serviceCollections.values()) {
+	    List<ServiceState> members = new ArrayList<>();
+	    for (Service member : collection.getMembers()) {
+		members.add(ServiceState.from(member));
+	    }
+	    state.collectionMembers.put(collection.constructFilter(), members);
+	}
+	state.singletonMembers = new HashMap<>();
+	for (SingletonService service : singletonServices.values()) {
+	    Service discovered = service.constructService();
+	    if (discovered != null) {
+		state.singletonMembers.put(service.constructFilter(),
+			ServiceState.from(discovered));
+	    }
+	}
+    }
+
+    /**
+     * Remove the restored members of the discovered services that have not
+     * been confirmed by discovery since the restart
+     */
+    private void validateMembership() {
+	for (ServiceCollection collection : serviceCollections.values()) {
+	    List<Service> expired = collection.expireUnconfirmed();
+	    if (expired.isEmpty()) {
+		continue;
+	    }
+	    logger.warn(String.format(
+		    "Restored members %s of service collection [%s] were not rediscovered",
+		    expired, collection));
+	    if (isReconfiguring()) {
+		reconfigure(collection.variable, collection.getCluster());
+	    }
+	}
+	for (SingletonService service : singletonServices.values()) {
+	    if (!service.isConfirmed()) {
+		logger.warn(String.format(
+			"Restored service [%s] was not rediscovered",
+			service.getRestored()));
+	    }
+	}
+	logger.info("Restored membership validated");
     }
 
     /**
      * Reestablish the configuration
      */
     private void restart(final AutoConfigureService configuredService) {
-	restart();
-	Thread startup = new Thread(new Runnable() {
+	this.configuredService.set(configuredService);
+	final RestartState state = restart();
+	Runnable startup = new Runnable() {
 	    @Override
 	    public void run() {
 		try {
+		    verifyGeneratedConfigurations(state);
+		    registerListeners();
+		    schedule(new Runnable() {
+			@Override
+			public void run() {
+			    validateMembership();
+			}
+		    }, config.membershipValidation, TimeUnit.MILLISECONDS);
+		    monitor.enter(Phase.JMX_START);
 		    jmxDiscovery.start(bound.get().getAddress());
-		    configuredService.succeed(generatedConfigurations);
+		    configuredService.succeed(generatedConfigurations,
+			    Collections.<String, ServerSocketChannel> emptyMap());
+		    configured.set(true);
+		    monitor.configured();
+		    reloadDeferred();
 		} catch (Exception e) {
 		    logger.error("Failed to restart the service", e);
 		    try {
+			monitor.failed();
 			configuredService.fail(generatedConfigurations);
 		    } catch (Exception e1) {
 			logger.error(
@@ -385,9 +1014,8 @@ public class AutoConfigure {
 		    }
 		}
 	    }
-	});
-	startup.setDaemon(true);
-	startup.start();
+	};
+	lifecycle.detached().execute(startup);
     }
 
     private void saveRestartState() {
@@ -398,19 +1026,97 @@ public class AutoConfigure {
 	    logger.info("Not saving restart state as no service was registered");
 	    return;
 	}
+	state.hostAddress = bound.get().getAddress().getHostAddress();
 	state.serviceURL = reference.getUrl().getServiceURL();
 	state.serviceProperties = reference.getProperties();
+	new RestartVerifier(config.templates, templateGroups).record(state,
+		generatedDigests);
+	RestartVerifier.saveVariables(state, lastVariables.get(),
+		config.variableSuppliers.keySet());
+	saveMembership(state);
 	logger.info(String.format(
 		"Saving restart state to file: %s, url: %s, properties: %s",
 		new File(config.restartStateFile).getAbsolutePath(),
 		state.serviceURL, state.serviceProperties));
+	writeRestartState(state);
+    }
+
+    /**
+     * Verify the configurations generated before the restart against the
+     * digests recorded in the restart state. Only the configurations that have
+     * drifted, or whose template group has changed, are regenerated, using the
+     * variables saved with the restart state.
+     * 
+     * @param state
+     *            - the restart state
+     */
+    private void verifyGeneratedConfigurations(RestartState state) {
+	Map<String, Object> variables = RestartVerifier.restoreVariables(state);
+	for (Map.Entry<String, VariableSupplier<?>> entry : config.variableSuppliers
+		.entrySet()) {
+	    variables.put(entry.getKey(), new LazyVariable(entry.getKey(),
+		    entry.getValue()));
+	}
+	Service model;
 	try {
-	    ObjectMapper mapper = new ObjectMapper();
-	    mapper.writer()
-		    .writeValue(new File(config.restartStateFile), state);
+	    model = new Service(new ServiceURL(state.serviceURL),
+		    state.serviceProperties);
+	} catch (MalformedURLException e) {
+	    throw new IllegalStateException(String.format(
+		    "Unable to reconstruct service URL: %s", state.serviceURL),
+		    e);
+	}
+	lastModel.set(model);
+	lastVariables.set(variables);
+	if (state.generatedDigests == null) {
+	    logger.info("No digests in restart state, reusing generated configurations");
+	    return;
+	}
+	RestartVerifier verifier = new RestartVerifier(config.templates,
+		templateGroups);
+	List<Template> drifted = verifier.drifted(state, getRenderPool(),
+		generatedDigests);
+	if (drifted.isEmpty()) {
+	    logger.info("Generated configurations verified");
+	    return;
+	}
+	monitor.enter(Phase.RENDERING);
+	ConfigurationWriter writer = new ConfigurationWriter(config.groupCommit);
+	try {
+	    for (Template template : drifted) {
+		logger.info(String.format(
+			"Regenerating drifted configuration [%s]",
+			template.name));
+		generate(template, model, variables, writer);
+	    }
+	    writer.commit();
+	} catch (IOException e) {
+	    writer.abort();
+	    String msg = "Cannot commit regenerated configuration files";
+	    logger.error(msg, e);
+	    throw new IllegalStateException(msg, e);
+	} catch (RuntimeException e) {
+	    writer.abort();
+	    throw e;
+	}
+	verifier.record(state, generatedDigests);
+	writeRestartState(state);
+    }
+
+    /**
+     * Write the restart state to the configured restart state file
+     * 
+     * @param state
+     */
+    private void writeRestartState(RestartState state) {
+	Object write = events.beginRestartState();
+	try {
+	    YamlHelper.jsonWriter().writeValue(
+		    new File(config.restartStateFile), state);
 	} catch (IOException e) {
 	    throw new IllegalStateException("Unable to save restart state", e);
 	}
+	events.endRestartState(write, config.restartStateFile, true);
     }
 
     /**
@@ -418,9 +1124,11 @@ public class AutoConfigure {
      * instance.
      */
     protected void allocateAdditionalPorts() {
+	PortReservation reserved = reservation.get();
 	for (Map.Entry<String, String> entry : additionalPorts.entrySet()) {
-	    entry.setValue(String.valueOf(Utils.allocatePort(bound.get()
-		    .getAddress())));
+	    int port = reserved == null ? Utils.allocatePort(bound.get()
+		    .getAddress()) : reserved.getPort(entry.getKey());
+	    entry.setValue(String.valueOf(port));
 	}
     }
 
@@ -429,8 +1137,22 @@ public class AutoConfigure {
      * service being configured.
      */
     protected void allocatePort() {
+	monitor.enter(Phase.INTERFACE_RESOLUTION);
 	InetAddress address = determineHostAddress();
-	int port = Utils.allocatePort(address);
+	monitor.enter(Phase.PORT_ALLOCATION);
+	PortReservation reserved;
+	try {
+	    reserved = PortReservation.reserve(address, config.portRange,
+		    additionalPorts.keySet());
+	} catch (IOException e) {
+	    String msg = String.format(
+		    "Unable to reserve ports on address [%s]", address);
+	    logger.error(msg, e);
+	    throw new IllegalStateException(msg, e);
+	}
+	releasePorts();
+	reservation.set(reserved);
+	int port = reserved.getPort(PortReservation.SERVICE_PORT);
 	if (port <= 0) {
 	    String msg = String.format(
 		    "Unable to allocate port on address [%s]", address);
@@ -446,44 +1168,8 @@ public class AutoConfigure {
      * @return the host address to bind this service to
      */
     protected InetAddress determineHostAddress() {
-	NetworkInterface iface = determineNetworkInterface();
-	InetAddress raw = null;
-	for (Enumeration<InetAddress> interfaceAddresses = iface
-		.getInetAddresses(); interfaceAddresses.hasMoreElements();) {
-	    if (!interfaceAddresses.hasMoreElements()) {
-		String msg = String
-			.format("Unable to find any network address for interface[%s] {%s}",
-				iface.getName(), iface.getDisplayName());
-		logger.error(msg);
-		throw new IllegalStateException(msg);
-	    }
-	    raw = interfaceAddresses.nextElement();
-	    if (config.ipV6) {
-		if (raw.getAddress().length == 6) {
-		    break;
-		}
-	    } else if (raw.getAddress().length == 4) {
-		break;
-	    }
-	}
-	if (raw == null) {
-	    String msg = String
-		    .format("Unable to find any network address for interface[%s] {%s}",
-			    iface.getName(), iface.getDisplayName());
-	    logger.error(msg);
-	    throw new IllegalStateException(msg);
-	}
-	InetAddress address;
-	try {
-	    address = InetAddress.getByName(raw.getCanonicalHostName());
-	} catch (UnknownHostException e) {
-	    String msg = String
-		    .format("Unable to resolve network address [%s] for interface[%s] {%s}",
-			    raw, iface.getName(), iface.getDisplayName());
-	    logger.error(msg, e);
-	    throw new IllegalStateException(msg, e);
-	}
-	return address;
+	return HostAddressResolver.from(config).resolve(
+		determineNetworkInterface());
     }
 
     /**
@@ -551,15 +1237,17 @@ public class AutoConfigure {
 		"discovered [%s, %s] for service collection [%s]",
 		reference.getUrl(), reference.getProperties(),
 		serviceCollection));
-	serviceCollection.discover(reference);
-	try {
-	    rendezvous.get().meet();
-	} catch (BrokenBarrierException e) {
-	    logger.trace("Barrier already broken");
-	} catch (IllegalStateException e) {
-	    logger.info(String.format("Barrier already broken: %s",
-		    reference.getUrl()));
+	if (!serviceCollection.discover(reference)) {
+	    logger.info(String.format(
+		    "Not counting redelivered or surplus service [%s] for [%s]",
+		    reference.getUrl(), serviceCollection));
+	    if (quorumPending.get() != null && isComplete()) {
+		logger.info("All services discovered within the quorum window");
+		proceedWithQuorum();
+	    }
+	    return;
 	}
+	arrive(reference);
     }
 
     /**
@@ -573,17 +1261,12 @@ public class AutoConfigure {
     protected void discover(ServiceReference reference, SingletonService service) {
 	logger.info(String.format("discovered [%s, %s] for service [%s]",
 		reference.getUrl(), reference.getProperties(), service));
-	if (service.isDiscovered()) {
+	if (!service.acquire(reference)) {
 	    logger.warn(String.format(
 		    "Service [%s] has already been discovered!", service));
 	    return;
 	}
-	service.discover(reference);
-	try {
-	    rendezvous.get().meet();
-	} catch (BrokenBarrierException e) {
-	    logger.trace("Barrier already broken");
-	}
+	arrive(reference);
     }
 
     /**
@@ -610,7 +1293,7 @@ public class AutoConfigure {
 		for (ServiceCollection serviceCollection : serviceCollections
 			.values()) {
 		    if (!serviceCollection.isSatisfied()) {
-			int cardinality = serviceCollection.cardinality;
+			int cardinality = serviceCollection.getQuorum();
 			int discoveredCardinality = serviceCollection
 				.getDiscoveredCardinality();
 			logger.error(String
@@ -621,6 +1304,8 @@ public class AutoConfigure {
 		    }
 		}
 		try {
+		    releasePorts();
+		    monitor.failed();
 		    configuredService.fail(generatedConfigurations);
 		} catch (Exception e) {
 		    logger.error(String.format(
@@ -640,15 +1325,32 @@ public class AutoConfigure {
      *            - The model for the configured service
      * @param variables
      *            - the variables used by the template
+     * @return true if the content of the generated configuration file changed
      */
-    protected void generate(Template template, Service thisService,
+    protected boolean generate(Template template, Service thisService,
 	    Map<String, Object> variables) {
-	STGroupFile group = new STGroupFile(template.templateGroup);
+	return generate(template, thisService, variables,
+		new ConfigurationWriter(false));
+    }
+
+    /**
+     * Generate the configuration file from the template group
+     * 
+     * @param template
+     *            - the template used to generate the configuration
+     * @param thisService
+     *            - The model for the configured service
+     * @param variables
+     *            - the variables used by the template
+     * @param writer
+     *            - the writer of the generated configuration file
+     * @return true if the content of the generated configuration file changed
+     */
+    protected boolean generate(Template template, Service thisService,
+	    Map<String, Object> variables, ConfigurationWriter writer) {
 	STGroup.verbose = config.verboseTemplating;
 	STGroup.trackCreationEvents = config.verboseTemplating;
-	group.registerModelAdaptor(Service.class, new ServiceModelAdaptor());
-	group.registerModelAdaptor(InetSocketAddress.class,
-		new InetSocketAddressAdaptor());
+	STGroup group = templateGroups.get(template.templateGroup);
 	ST st = group.getInstanceOf(template.template);
 	if (st == null) {
 	    String msg = String
@@ -657,39 +1359,29 @@ public class AutoConfigure {
 	    logger.error(msg);
 	    throw new IllegalStateException(msg);
 	}
-	// Register the substitution variables
-	for (Map.Entry<String, Object> entry : variables.entrySet()) {
-	    try {
-		st.add(entry.getKey(), entry.getValue());
-	    } catch (IllegalArgumentException e) {
-		// Really? This is how I have to detect that there isn't a
-		// formal parameter? #fail
+	// Register only the attributes the template declares: the service
+	// being configured, the Gossip seeds and the substitution variables
+	Set<String> arguments = st.impl.formalArguments == null ? Collections
+		.<String> emptySet() : st.impl.formalArguments.keySet();
+	for (String argument : arguments) {
+	    if (argument.equals(template.thisServiceName)) {
+		st.add(argument, thisService);
+	    } else if (argument.equals(GOSSIP_SEEDS)) {
+		// create a Cluster to make interaction with Gossip seeds equal
+		// to service collections
+		st.add(argument, new Cluster<>(config.gossip.seeds));
+	    } else if (variables.containsKey(argument)) {
+		st.add(argument, LazyVariable.resolve(variables.get(argument)));
 	    }
 	}
 
-	// Register the Gossip seeds
-	try {
-	    // create a Cluster to make interaction with Gossip seeds equal to
-	    // service collections
-	    st.add("gossipSeeds", new Cluster<>(config.gossip.seeds));
-	} catch (IllegalArgumentException e) {
-	    // Really? This is how I have to detect that there isn't a formal
-	    // parameter? #fail
-	}
-
-	// Finally, register the service being configured
-	try {
-	    st.add(template.thisServiceName, thisService);
-	} catch (IllegalArgumentException e) {
-	    // Really? This is how I have to detect that there isn't a formal
-	    // parameter? #fail
-	}
-
 	// Render!
-	String generated = st.render();
-
-	try (Writer writer = new FileWriter(template.generated)) {
-	    writer.write(generated);
+	String key = template.generated.getAbsolutePath();
+	Object render = events.beginRender();
+	ConfigurationWriter.Output output;
+	try {
+	    output = writer.writeOutput(st, template.generated,
+		    generatedDigests.get(key));
 	} catch (IOException e) {
 	    String msg = String
 		    .format("Cannot write generated configuration file[%s] for templateGroup [%s]",
@@ -698,6 +1390,10 @@ public class AutoConfigure {
 	    logger.error(msg, e);
 	    throw new IllegalStateException(msg, e);
 	}
+	boolean changed = !output.digest.equals(generatedDigests.put(key,
+		output.digest));
+	events.endRender(render, template, output.size, changed);
+	return changed;
     }
 
     /**
@@ -706,9 +1402,97 @@ public class AutoConfigure {
     protected void generateConfigurations() {
 	Service model = new Service(thisService.get(),
 		registeredServiceProperties);
+	monitor.enter(Phase.VARIABLE_RESOLUTION);
 	Map<String, Object> variables = resolveVariables();
-	for (Template template : config.templates) {
-	    generate(template, model, variables);
+	monitor.enter(Phase.RENDERING);
+	ConfigurationWriter writer = new ConfigurationWriter(config.groupCommit);
+	try {
+	    if (config.parallelRendering && isIndependent(config.templates)) {
+		generateInParallel(config.templates, model, variables, writer);
+	    } else {
+		for (Template template : config.templates) {
+		    generate(template, model, variables, writer);
+		}
+	    }
+	    writer.commit();
+	    lastModel.set(model);
+	    lastVariables.set(variables);
+	} catch (IOException e) {
+	    writer.abort();
+	    String msg = "Cannot commit generated configuration files";
+	    logger.error(msg, e);
+	    throw new IllegalStateException(msg, e);
+	} catch (RuntimeException e) {
+	    writer.abort();
+	    throw e;
+	}
+    }
+
+    /**
+     * Generate the configuration files from the templates, rendering and
+     * writing the templates concurrently. All templates are rendered, and any
+     * failures are reported together once every template has been processed.
+     * 
+     * @param templates
+     *            - the templates to generate
+     * @param thisService
+     *            - The model for the configured service
+     * @param variables
+     *            - the variables used by the templates
+     * @param writer
+     *            - the writer of the generated configuration files
+     */
+    protected void generateInParallel(List<Template> templates,
+	    final Service thisService, final Map<String, Object> variables,
+	    final ConfigurationWriter writer) {
+	final Throwable[] failures = new Throwable[templates.size()];
+	final List<RecursiveAction> renderings = new ArrayList<>();
+	for (int i = 0; i < templates.size(); i++) {
+	    final int index = i;
+	    final Template template = templates.get(i);
+	    renderings.add(new RecursiveAction() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void compute() {
+		    try {
+			generate(template, thisService, variables, writer);
+		    } catch (Throwable e) {
+			failures[index] = e;
+		    }
+		}
+	    });
+	}
+	getRenderPool().invoke(new RecursiveAction() {
+	    private static final long serialVersionUID = 1L;
+
+	    @Override
+	    protected void compute() {
+		invokeAll(renderings);
+	    }
+	});
+	List<String> failed = new ArrayList<>();
+	Throwable cause = null;
+	for (int i = 0; i < failures.length; i++) {
+	    if (failures[i] != null) {
+		failed.add(templates.get(i).name);
+		if (cause == null) {
+		    cause = failures[i];
+		}
+	    }
+	}
+	if (cause != null) {
+	    String msg = String.format(
+		    "Unable to generate configurations for templates %s",
+		    failed);
+	    logger.error(msg);
+	    IllegalStateException e = new IllegalStateException(msg, cause);
+	    for (Throwable failure : failures) {
+		if (failure != null && failure != cause) {
+		    e.addSuppressed(failure);
+		}
+	    }
+	    throw e;
 	}
     }
 
@@ -722,6 +1506,16 @@ public class AutoConfigure {
 	return bound.get();
     }
 
+    /**
+     * @return the pool used to render templates in parallel
+     */
+    protected synchronized ForkJoinPool getRenderPool() {
+	if (renderPool == null) {
+	    renderPool = new ForkJoinPool(Math.max(1, config.renderParallelism));
+	}
+	return renderPool;
+    }
+
     /**
      * @return the cardinality of the expected number of services required to
      *         configure this service instance
@@ -730,27 +1524,142 @@ public class AutoConfigure {
 	int cardinality = 0;
 	cardinality += singletonServices.size();
 	for (ServiceCollection collection : serviceCollections.values()) {
-	    cardinality += collection.cardinality;
+	    cardinality += collection.getQuorum();
 	}
 	logger.info(String.format("Expecting %s service registrations",
 		cardinality));
 	return cardinality;
     }
 
+    /**
+     * @param templates
+     * @return true if each of the templates generates a distinct configuration
+     *         file, and so can be rendered independently of the others
+     */
+    protected boolean isIndependent(List<Template> templates) {
+	Set<File> generated = new HashSet<>();
+	for (Template template : templates) {
+	    if (!generated.add(template.generated.getAbsoluteFile())) {
+		logger.info(String
+			.format("Multiple templates generate [%s], rendering sequentially",
+				template.generated));
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * @return true if every service of every service collection has been
+     *         discovered
+     */
+    protected boolean isComplete() {
+	for (ServiceCollection collection : serviceCollections.values()) {
+	    if (!collection.isComplete()) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Answer the action run when the required quorum of services has been
+     * discovered. If a service collection is incomplete and has a quorum
+     * window, the success action is deferred until the window expires or the
+     * remaining services are discovered, whichever is first.
+     * 
+     * @param successAction
+     * @return the quorum action
+     */
+    protected Runnable quorumAction(final Runnable successAction) {
+	return new Runnable() {
+	    @Override
+	    public void run() {
+		long window = quorumWindow();
+		if (window <= 0) {
+		    successAction.run();
+		    return;
+		}
+		logger.info(String
+			.format("Quorum discovered, waiting %s ms for the remaining services",
+				window));
+		quorumPending.set(successAction);
+		schedule(new Runnable() {
+		    @Override
+		    public void run() {
+			proceedWithQuorum();
+		    }
+		}, window, TimeUnit.MILLISECONDS);
+		if (isComplete()) {
+		    proceedWithQuorum();
+		}
+	    }
+	};
+    }
+
+    /**
+     * @return the longest quorum window of the incomplete service collections
+     */
+    protected long quorumWindow() {
+	long window = 0;
+	for (ServiceCollection collection : serviceCollections.values()) {
+	    if (!collection.isComplete()) {
+		window = Math.max(window, collection.quorumWindow);
+	    }
+	}
+	return window;
+    }
+
     /**
      * Register the listeners for the required services on the discovery scope
      */
     protected void registerListeners() {
+	if (config.multiplexListeners) {
+	    registerMultiplexingListener();
+	    return;
+	}
 	registerServiceCollectionListeners();
 	registerServiceListeners();
     }
 
+    /**
+     * Register a single listener on the discovery scope, dispatching to the
+     * listeners of the required singleton services and service collections
+     */
+    protected void registerMultiplexingListener() {
+	MultiplexingServiceListener multiplexer = new MultiplexingServiceListener();
+	for (Map.Entry<ServiceListener, SingletonService> entry : singletonServices
+		.entrySet()) {
+	    multiplexer.add(entry.getValue().getFilter(), entry.getKey());
+	}
+	for (Map.Entry<ServiceListener, ServiceCollection> entry : serviceCollections
+		.entrySet()) {
+	    multiplexer.add(entry.getValue().getFilter(), entry.getKey());
+	}
+	if (multiplexer.isEmpty()) {
+	    return;
+	}
+	String filter = multiplexer.constructFilter();
+	try {
+	    logger.info(String.format(
+		    "Registering multiplexing listener for %s services",
+		    singletonServices.size() + serviceCollections.size()));
+	    addServiceListener(multiplexer, filter);
+	} catch (InvalidSyntaxException e) {
+	    String msg = String.format(
+		    "Invalid syntax for multiplexed service filter [%s]", filter);
+	    logger.error(msg, e);
+	    throw new IllegalArgumentException(msg, e);
+	}
+    }
+
     /**
      * Register the configured service instance in the discovery scope.
      */
     protected void registerService() {
 	allocatePort();
 	allocateAdditionalPorts();
+	monitor.enter(Phase.REGISTRATION);
 	String service = String.format(config.serviceUrl, bound.get()
 		.getHostName(), bound.get().getPort());
 	registeredServiceProperties.putAll(config.serviceProperties);
@@ -776,6 +1685,7 @@ public class AutoConfigure {
     protected void addServiceProperties(Map<String, String> additionalProperties) {
     registeredServiceProperties.putAll(additionalProperties);
     discovery.setProperties(serviceRegistration.get(), registeredServiceProperties);
+    events.propertiesPublished(serviceRegistration.get(), registeredServiceProperties.size());
     }
 
     /**
@@ -790,8 +1700,8 @@ public class AutoConfigure {
 		logger.info(String.format(
 			"Registering listener for service collection %s",
 			service));
-		discovery.addServiceListener(entry.getKey(),
-			service.constructFilter());
+		addServiceListener(entry.getKey(), service.getFilter()
+			.toString());
 	    } catch (InvalidSyntaxException e) {
 		String msg = String
 			.format("Invalid syntax for discovered service collection [%s]",
@@ -813,8 +1723,8 @@ public class AutoConfigure {
 	    try {
 		logger.info(String.format(
 			"Registering listener for service [%s]", service));
-		discovery.addServiceListener(entry.getKey(),
-			service.constructFilter());
+		addServiceListener(entry.getKey(), service.getFilter()
+			.toString());
 	    } catch (InvalidSyntaxException e) {
 		String msg = String.format(
 			"Invalid syntax for discovered service [%s]", service);
@@ -828,32 +1738,95 @@ public class AutoConfigure {
      * @return the mapping of substitution variables used by the templates
      */
     protected Map<String, Object> resolveVariables() {
+	return resolveVariables(config.templates, config.variables);
+    }
+
+    /**
+     * @param templates
+     *            - the templates using the variables
+     * @param configured
+     *            - the configured substitution variables
+     * @return the mapping of substitution variables used by the templates
+     */
+    protected Map<String, Object> resolveVariables(List<Template> templates,
+	    Map<String, String> configured) {
+	Set<String> required = requiredVariables(templates);
 	Map<String, Object> resolvedVariables = new HashMap<>();
 
 	// Add any configured variables
-	resolvedVariables.putAll(config.variables);
+	for (Map.Entry<String, String> entry : configured.entrySet()) {
+	    if (required.contains(entry.getKey())) {
+		resolvedVariables.put(entry.getKey(), entry.getValue());
+	    }
+	}
+
+	// Add any configured suppliers of variables
+	for (Map.Entry<String, VariableSupplier<?>> entry : config.variableSuppliers
+		.entrySet()) {
+	    if (required.contains(entry.getKey())) {
+		resolvedVariables.put(entry.getKey(), new LazyVariable(
+			entry.getKey(), entry.getValue()));
+	    }
+	}
 
 	// Add the generated directories
-	for (UniqueDirectory uDir : config.uniqueDirectories) {
-	    try {
-		resolvedVariables.put(uDir.variable, uDir.resolve());
-	    } catch (IOException e) {
-		String msg = String.format(
-			"Cannot create unique directory [%s]", uDir);
-		logger.error(msg, e);
-		throw new IllegalStateException(msg, e);
+	for (final UniqueDirectory uDir : config.uniqueDirectories) {
+	    if (!required.contains(uDir.variable)) {
+		logger.info(String.format(
+			"Unique directory [%s] is not used by any template",
+			uDir.variable));
+		continue;
 	    }
+	    resolvedVariables.put(uDir.variable, new LazyVariable(
+		    uDir.variable, new VariableSupplier<File>() {
+			@Override
+			public File supply() {
+			    try {
+				return uDir.resolve();
+			    } catch (IOException e) {
+				String msg = String.format(
+					"Cannot create unique directory [%s]",
+					uDir);
+				logger.error(msg, e);
+				throw new IllegalStateException(msg, e);
+			    }
+			}
+		    }));
 	}
 
 	// Register the service variables
-	for (SingletonService definition : singletonServices.values()) {
-	    resolvedVariables.put(definition.variable,
-		    definition.constructService());
+	for (final SingletonService definition : singletonServices.values()) {
+	    if (required.contains(definition.variable)) {
+		resolvedVariables.put(definition.variable, new LazyVariable(
+			definition.variable, new VariableSupplier<Service>() {
+			    @Override
+			    public Service supply() {
+				return definition.constructService();
+			    }
+			}));
+	    }
 	}
 
-	// Register the service collection variables
-	for (ServiceCollection definition : serviceCollections.values()) {
-	    resolvedVariables.put(definition.variable, definition.getCluster());
+	// Register the service collection variables. The collection providing
+	// the total ordering is always canonicalized, as this assigns the
+	// index of each member
+	for (final ServiceCollection definition : serviceCollections.values()) {
+	    if (definition.variable != null
+		    && definition.variable.equals(config.totalOrderingFrom)) {
+		Cluster<Service> cluster = definition.getCluster();
+		if (required.contains(definition.variable)) {
+		    resolvedVariables.put(definition.variable, cluster);
+		}
+	    } else if (required.contains(definition.variable)) {
+		resolvedVariables.put(definition.variable, new LazyVariable(
+			definition.variable,
+			new VariableSupplier<Cluster<Service>>() {
+			    @Override
+			    public Cluster<Service> supply() {
+				return definition.getCluster();
+			    }
+			}));
+	    }
 	}
 
 	// Register the id variable, if a service collection is indicated
@@ -894,18 +1867,122 @@ public class AutoConfigure {
 			reference.getProperties());
 		updated.put(idPropertyName, index);
 		discovery.setProperties(serviceRegistration.get(), updated);
+		events.propertiesPublished(serviceRegistration.get(),
+			updated.size());
 	    }
 	}
 
 	// Finally, add any property overrides that were specified during the
 	// runtime call to configure.
-	resolvedVariables.putAll(environment);
+	for (Map.Entry<String, String> entry : environment.entrySet()) {
+	    if (required.contains(entry.getKey())) {
+		resolvedVariables.put(entry.getKey(), entry.getValue());
+	    }
+	}
 
 	logger.info(String.format("Using property substitions [%s]",
 		resolvedVariables));
 	return resolvedVariables;
     }
 
+    /**
+     * Regenerate the configuration files that depend on the variable, after
+     * the membership of the discovered services has changed. Only the
+     * configuration files whose content has changed are rewritten, and these
+     * are reported to the configured service.
+     * 
+     * @param variable
+     *            - the name of the variable whose value has changed
+     * @param value
+     *            - the new value of the variable
+     */
+    protected synchronized void reconfigure(String variable, Object value) {
+	Map<String, Object> variables = lastVariables.get();
+	Service model = lastModel.get();
+	if (variables == null || model == null) {
+	    logger.info(String
+		    .format("Unable to reconfigure variable [%s], no configuration has been generated",
+			    variable));
+	    return;
+	}
+	if (environment.containsKey(variable)) {
+	    logger.info(String.format(
+		    "Variable [%s] is overridden by the environment", variable));
+	    return;
+	}
+	variables = new HashMap<>(variables);
+	variables.put(variable, value);
+	Map<String, File> changed = new HashMap<>();
+	ConfigurationWriter writer = new ConfigurationWriter(config.groupCommit);
+	try {
+	    for (Template template : config.templates) {
+		Set<String> arguments = templateGroups.getFormalArguments(
+			template.templateGroup, template.template);
+		if (arguments != null && arguments.contains(variable)
+			&& generate(template, model, variables, writer)) {
+		    changed.put(template.name, template.generated);
+		}
+	    }
+	    writer.commit();
+	} catch (Throwable e) {
+	    writer.abort();
+	    logger.error(String.format(
+		    "Unable to reconfigure after change of variable [%s]",
+		    variable), e);
+	    return;
+	}
+	lastVariables.set(variables);
+	if (changed.isEmpty()) {
+	    logger.info(String.format(
+		    "Change of variable [%s] did not change any configuration",
+		    variable));
+	    return;
+	}
+	logger.info(String.format(
+		"Change of variable [%s] regenerated configurations %s",
+		variable, changed.keySet()));
+	try {
+	    configuredService.get().reconfigured(changed);
+	} catch (Throwable e) {
+	    logger.error(
+		    "Exception encountered during the running reconfiguration action",
+		    e);
+	}
+    }
+
+    /**
+     * @return true if changes to the membership of the discovered services
+     *         should regenerate the configurations
+     */
+    protected boolean isReconfiguring() {
+	return config.reconfigure && configured.get();
+    }
+
+    /**
+     * @return the names of the variables declared as formal arguments by the
+     *         configured templates
+     */
+    protected Set<String> requiredVariables() {
+	return requiredVariables(config.templates);
+    }
+
+    /**
+     * @param templates
+     * @return the names of the variables declared as formal arguments by the
+     *         templates
+     */
+    protected Set<String> requiredVariables(List<Template> templates) {
+	Set<String> required = new HashSet<>();
+	for (Template template : templates) {
+	    Set<String> arguments = templateGroups.getFormalArguments(
+		    template.templateGroup, template.template);
+	    if (arguments != null) {
+		required.addAll(arguments);
+	    }
+	}
+	return required;
+    }
+
     /**
      * @return a service collection listener
      */
@@ -914,10 +1991,12 @@ public class AutoConfigure {
 	    @Override
 	    public void serviceChanged(ServiceEvent event) {
 		ServiceReference reference = event.getReference();
+		ServiceCollection serviceCollection = serviceCollections
+			.get(this);
+		events.serviceEvent(event.getType().name(),
+			reference.getUrl(), serviceCollection);
 		switch (event.getType()) {
 		case REGISTERED:
-		    ServiceCollection serviceCollection = serviceCollections
-			    .get(this);
 		    if (serviceCollection == null) {
 			String msg = String.format(
 				"No existing listener matching [%s]",
@@ -925,6 +2004,24 @@ public class AutoConfigure {
 			logger.trace(msg);
 			throw new IllegalStateException(msg);
 		    }
+		    if (serviceCollection.confirm(reference)) {
+			logger.info(String.format(
+				"service [%s] confirmed as restored member of [%s]",
+				reference.getUrl(), serviceCollection));
+			break;
+		    }
+		    if (isReconfiguring()) {
+			if (!serviceCollection.contains(reference)) {
+			    logger.info(String
+				    .format("service [%s] has joined service collection [%s] after acquisition",
+					    reference.getUrl(),
+					    serviceCollection));
+			    serviceCollection.discover(reference);
+			    reconfigure(serviceCollection.variable,
+				    serviceCollection.getCluster());
+			}
+			break;
+		    }
 		    discover(reference, serviceCollection);
 		    break;
 		case UNREGISTERED:
@@ -932,11 +2029,21 @@ public class AutoConfigure {
 			    .format("service [%s] has been unregistered after acquisition",
 				    reference.getUrl());
 		    logger.info(msg);
+		    if (isReconfiguring() && serviceCollection != null
+			    && serviceCollection.remove(reference)) {
+			reconfigure(serviceCollection.variable,
+				serviceCollection.getCluster());
+		    }
 		    break;
 		case MODIFIED:
 		    logger.info(String.format(
 			    "service [%s] has been modified after acquisition",
 			    reference.getUrl()));
+		    if (isReconfiguring() && serviceCollection != null
+			    && serviceCollection.update(reference)) {
+			reconfigure(serviceCollection.variable,
+				serviceCollection.getCluster());
+		    }
 		    break;
 		}
 	    }
@@ -957,9 +2064,11 @@ public class AutoConfigure {
 			    .format("Ignoring service event for this instance's service"));
 		    return;
 		}
+		SingletonService service = singletonServices.get(this);
+		events.serviceEvent(event.getType().name(),
+			reference.getUrl(), service);
 		switch (event.getType()) {
 		case REGISTERED:
-		    SingletonService service = singletonServices.get(this);
 		    if (service == null) {
 			String msg = String.format(
 				"No existing listener matching [%s]",
@@ -967,17 +2076,48 @@ public class AutoConfigure {
 			logger.error(msg);
 			throw new IllegalStateException(msg);
 		    }
+		    if (service.confirm(reference)) {
+			String restored = service.getRestored().getProperties()
+				.get(ServiceScope.SERVICE_REGISTRATION);
+			logger.info(String.format(
+				"service [%s] confirmed as restored service [%s]",
+				reference.getUrl(), service));
+			if (isReconfiguring()
+				&& !reference.getRegistration().toString()
+					.equals(restored)) {
+			    reconfigure(service.variable,
+				    service.constructService());
+			}
+			break;
+		    }
+		    if (isReconfiguring()) {
+			if (service.replace(reference)) {
+			    logger.info(String.format(
+				    "service [%s] has replaced service [%s]",
+				    reference.getUrl(), service));
+			    reconfigure(service.variable,
+				    service.constructService());
+			}
+			break;
+		    }
 		    discover(reference, service);
 		    break;
 		case UNREGISTERED:
 		    logger.info(String
 			    .format("service [%s] has been unregistered after acquisition",
 				    reference.getUrl()));
+		    if (isReconfiguring() && service != null) {
+			service.withdraw(reference);
+		    }
 		    break;
 		case MODIFIED:
 		    logger.info(String.format(
 			    "service [%s] has been modified after acquisition",
 			    reference.getUrl()));
+		    if (isReconfiguring() && service != null
+			    && service.update(reference)) {
+			reconfigure(service.variable, service.constructService());
+		    }
 		    break;
 		}
 	    }
@@ -1000,10 +2140,19 @@ public class AutoConfigure {
 		logger.info("All services have been discovered");
 		try {
 		    generateConfigurations();
+		    if (!config.reconfigure) {
+			for (ServiceCollection collection : serviceCollections
+				.values()) {
+			    collection.seal();
+			}
+		    }
+		    configured.set(true);
 		} catch (Throwable e) {
 		    logger.error("Error processing configurations", e);
 		    failed.set(true);
 		    try {
+			releasePorts();
+			monitor.failed();
 			configuredService.fail(generatedConfigurations);
 		    } catch (Exception e1) {
 			logger.error(
@@ -1013,12 +2162,17 @@ public class AutoConfigure {
 		    }
 		    return;
 		}
+		monitor.enter(Phase.RESTART_STATE_SAVE);
 		saveRestartState();
 		logger.info("Auto configuration successfully completed, running success action");
 		try {
+		    monitor.enter(Phase.JMX_START);
 		    jmxDiscovery.start(bound.get().getAddress());
-		    configuredService.succeed(generatedConfigurations);
+		    configuredService.succeed(generatedConfigurations,
+			    claimPorts());
+		    monitor.configured();
 		    logger.info("Success action completed");
+		    reloadDeferred();
 		} catch (Throwable e) {
 		    logger.error(
 			    "Exception encountered during the running success action",
@@ -1026,6 +2180,8 @@ public class AutoConfigure {
 		    failed.set(true);
 		    logger.info("Running failure action");
 		    try {
+			releasePorts();
+			monitor.failed();
 			configuredService.fail(generatedConfigurations);
 		    } catch (Exception e1) {
 			logger.error(
@@ -0,0 +1,201 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.io.File;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.hellblazer.autoconfigure.configuration.Configuration;
+import com.hellblazer.autoconfigure.configuration.Template;
+
+/**
+ * Hosts several auto configured services in one process, configuring them
+ * over discovery scopes shared through a {@link ScopePool}. Services with the
+ * same gossip seeds share a single scope. Each hosted service must use its
+ * own restart state file and generate its own configuration files.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public class AutoConfigureHost {
+    private static class Hosted {
+	private final AutoConfigure autoConfigure;
+	private final Set<File> files;
+	private final ScopePool.Lease lease;
+
+	private Hosted(AutoConfigure autoConfigure, Set<File> files,
+		ScopePool.Lease lease) {
+	    this.autoConfigure = autoConfigure;
+	    this.files = files;
+	    this.lease = lease;
+	}
+    }
+
+    /**
+     * @return the restart state file and generated configuration files
+     *         written by the service
+     */
+    private static Set<File> filesOf(Configuration config) {
+	Set<File> files = new HashSet<>();
+	files.add(canonical(new File(config.restartStateFile)));
+	for (Template template : config.templates) {
+	    if (template.generated != null) {
+		files.add(canonical(template.generated));
+	    }
+	}
+	return files;
+    }
+
+    private static File canonical(File file) {
+	return file.getAbsoluteFile().toPath().normalize().toFile();
+    }
+
+    private final List<Hosted> hosted = new ArrayList<>();
+    private final ScopePool pool;
+    private final ScheduledExecutorService scheduler;
+
+    public AutoConfigureHost() {
+	this(ScopePool.getDefault(), null);
+    }
+
+    /**
+     * @param pool
+     *            - the pool of shared discovery scopes
+     * @param scheduler
+     *            - the scheduler used to time out the configuration of the
+     *            hosted services, or null to use the shared scheduler
+     */
+    public AutoConfigureHost(ScopePool pool, ScheduledExecutorService scheduler) {
+	this.pool = pool;
+	this.scheduler = scheduler;
+    }
+
+    /**
+     * Add a service to the host
+     * 
+     * @param config
+     *            - the configuration of the service
+     * @return the auto configuration of the service, using the shared
+     *         discovery scope for its gossip seeds
+     * @throws SocketException
+     *             - if the discovery scope cannot be constructed
+     * @throws IllegalArgumentException
+     *             - if the service shares its restart state file or a
+     *             generated configuration file with a hosted service
+     */
+    public synchronized AutoConfigure add(Configuration config)
+	    throws SocketException {
+	Set<File> files = filesOf(config);
+	for (Hosted service : hosted) {
+	    for (File file : files) {
+		if (service.files.contains(file)) {
+		    throw new IllegalArgumentException(String.format(
+			    "File [%s] is already written by a hosted service",
+			    file));
+		}
+	    }
+	}
+	ScopePool.Lease lease = pool.acquire(config.gossip);
+	AutoConfigure autoConfigure;
+	try {
+	    autoConfigure = new AutoConfigure(config, lease.getScope(),
+		    scheduler, false);
+	} catch (RuntimeException e) {
+	    lease.release();
+	    throw e;
+	}
+	hosted.add(new Hosted(autoConfigure, files, lease));
+	return autoConfigure;
+    }
+
+    /**
+     * Add a service to the host and run its auto configuration
+     * 
+     * @param config
+     *            - the configuration of the service
+     * @param environment
+     *            - a map of variables that override any configured variables
+     * @param timeout
+     *            - the length of time to wait for auto configuration to
+     *            complete
+     * @param unit
+     *            - the unit of the wait time
+     * @return the future result of the configuration
+     * @throws SocketException
+     *             - if the discovery scope cannot be constructed
+     */
+    public ConfigurationFuture configure(Configuration config,
+	    Map<String, String> environment, long timeout, TimeUnit unit)
+	    throws SocketException {
+	return add(config).configureAsync(environment, timeout, unit);
+    }
+
+    /**
+     * @return the auto configurations of the hosted services
+     */
+    public synchronized List<AutoConfigure> getHosted() {
+	List<AutoConfigure> services = new ArrayList<>();
+	for (Hosted service : hosted) {
+	    services.add(service.autoConfigure);
+	}
+	return services;
+    }
+
+    /**
+     * Shut down a hosted service, releasing its lease of the shared discovery
+     * scope. The services sharing the scope continue to run.
+     * 
+     * @param autoConfigure
+     *            - the auto configuration of the hosted service
+     * @return true if the service was hosted
+     */
+    public synchronized boolean remove(AutoConfigure autoConfigure) {
+	for (Iterator<Hosted> services = hosted.iterator(); services.hasNext();) {
+	    Hosted service = services.next();
+	    if (service.autoConfigure == autoConfigure) {
+		services.remove();
+		try {
+		    service.autoConfigure.shutdown();
+		} finally {
+		    service.lease.release();
+		}
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Shut down the hosted services, releasing their shared discovery scopes
+     */
+    public synchronized void shutdown() {
+	for (Hosted service : hosted) {
+	    try {
+		service.autoConfigure.shutdown();
+	    } finally {
+		service.lease.release();
+	    }
+	}
+	hosted.clear();
+    }
+}
@@ -18,6 +18,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.SocketException;
 import java.net.URL;
+import java.nio.channels.ServerSocketChannel;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -59,6 +60,29 @@ public abstract class AutoConfigureService {
         return YamlHelper.fromYaml(url.openStream());
     }
 
+    /**
+     * @param configurationResource
+     * @param snapshot
+     *            - if true, and the configuration resource is a file, use the
+     *            binary snapshot of the configuration written next to the file
+     *            when it matches the content of the file
+     * @return the configuration
+     * @throws IOException
+     * @throws JsonMappingException
+     * @throws JsonParseException
+     */
+    public static Configuration configurationFrom(String configurationResource,
+                                                  boolean snapshot)
+                                                                   throws JsonParseException,
+                                                                   JsonMappingException,
+                                                                   IOException {
+        File configFile = new File(configurationResource);
+        if (snapshot && configFile.exists()) {
+            return YamlHelper.fromYaml(configFile, true);
+        }
+        return configurationFrom(configurationResource);
+    }
+
     public static URL getURL(String fileName) {
         URL url;
         ClassLoader cl = Thread.currentThread().getContextClassLoader();
@@ -70,10 +94,33 @@ public abstract class AutoConfigureService {
         return url;
     }
 
+    private static File configurationFileOf(String configurationResource) {
+        File configFile = new File(configurationResource);
+        return configFile.exists() ? configFile : null;
+    }
+
     private final AutoConfigure autoConfigure;
+    private final File          configurationFile;
 
     public AutoConfigureService(AutoConfigure autoConfigure) {
+        this(autoConfigure, null);
+    }
+
+    /**
+     * Construct an instance whose configuration was loaded from the
+     * configuration file. If the configuration enables hot reloading, the file
+     * is watched once the service is started, and changes to the file are
+     * applied to the running service.
+     * 
+     * @param autoConfigure
+     * @param configurationFile
+     *            - the configuration YAML file, or null if the configuration
+     *            was not loaded from a file
+     */
+    public AutoConfigureService(AutoConfigure autoConfigure,
+                                File configurationFile) {
         this.autoConfigure = autoConfigure;
+        this.configurationFile = configurationFile;
     }
 
     /**
@@ -92,9 +139,11 @@ public abstract class AutoConfigureService {
                                                              throws JsonParseException,
                                                              JsonMappingException,
                                                              IOException {
-        this(configurationFrom(configurationResource));
+        this(configurationFrom(configurationResource).construct(),
+             configurationFileOf(configurationResource));
     }
 
+
     /**
      * The auto configuration has failed. The map of configurations contains the
      * generated configuration files as configured.
@@ -117,6 +166,16 @@ public abstract class AutoConfigureService {
         return autoConfigure.getDiscoveryScope();
     }
 
+    /**
+     * 
+     * @return the current view of the discovered service collections, keyed
+     *         by variable. After a restart, this is the membership restored
+     *         from the restart state until it is validated by discovery.
+     */
+    public Map<String, Cluster<Service>> getMembership() {
+        return autoConfigure.getMembership();
+    }
+
     /**
      * Convenience method to add additional properties after the service has been registered.
      */
@@ -124,6 +183,22 @@ public abstract class AutoConfigureService {
         autoConfigure.addServiceProperties(additionalProperties);
     }
 
+    /**
+     * The membership of the discovered services has changed after the auto
+     * configuration has succeeded, and the configuration files depending on
+     * that membership have been regenerated. Only called when the
+     * configuration enables reconfiguration.
+     * 
+     * @param configurations
+     *            - the map of template names to the generated configuration
+     *            files whose content has changed
+     * @throws Exception
+     *             - D'oh!
+     */
+    public void reconfigured(Map<String, File> configurations) throws Exception {
+        // default is to ignore reconfiguration
+    }
+
     /**
      * Start the auto configuration service.
      */
@@ -136,6 +211,9 @@ public abstract class AutoConfigureService {
      */
     public void start(Map<String, String> environment, long timeout,
                       TimeUnit unit) {
+        if (configurationFile != null) {
+            autoConfigure.watch(configurationFile);
+        }
         autoConfigure.configure(environment, this, timeout, unit);
     }
 
@@ -150,4 +228,35 @@ public abstract class AutoConfigureService {
      */
     abstract public void succeed(Map<String, File> configurations)
                                                                   throws Exception;
+
+    /**
+     * The auto configuration has succeeded. The map of configurations contains
+     * the generated configuration files as configured, and the map of bound
+     * ports contains the server socket channels reserved for this service,
+     * still bound to the registered address. The service port is mapped to
+     * {@link PortReservation#SERVICE_PORT} and each additional port to its
+     * name. Services overriding this method take ownership of the channels and
+     * may accept connections on them immediately, rather than closing and
+     * rebinding the ports.
+     * <p>
+     * The default implementation closes the channels and delegates to
+     * {@link #succeed(Map)}.
+     * 
+     * @param configurations
+     *            - the map of template names to generated configuration files
+     * @param boundPorts
+     *            - the map of port names to bound server socket channels. Empty
+     *            if no ports are held by the configuration, such as when the
+     *            service is restarted from its restart state
+     * @throws Exception
+     *             - D'oh!
+     */
+    public void succeed(Map<String, File> configurations,
+                        Map<String, ServerSocketChannel> boundPorts)
+                                                                    throws Exception {
+        for (ServerSocketChannel channel : boundPorts.values()) {
+            channel.close();
+        }
+        succeed(configurations);
+    }
 }
@@ -0,0 +1,83 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.stringtemplate.v4.Interpreter;
+import org.stringtemplate.v4.ModelAdaptor;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.misc.STNoSuchPropertyException;
+
+/**
+ * An adaptor for ST to pull the properties of a {@link Cluster} without
+ * reflection
+ * 
+ * @author hhildebrand
+ * 
+ */
+public class ClusterModelAdaptor implements ModelAdaptor {
+	private static enum Accessor {
+		CARDINALITY {
+			@Override
+			Object get(Cluster<?> cluster) {
+				return cluster.getCardinality();
+			}
+		},
+		FIRST {
+			@Override
+			Object get(Cluster<?> cluster) {
+				return cluster.getFirst();
+			}
+		},
+		MEMBERS {
+			@Override
+			Object get(Cluster<?> cluster) {
+				return cluster.getMembers();
+			}
+		};
+
+		abstract Object get(Cluster<?> cluster);
+	}
+
+	private static final Map<String, Accessor> ACCESSORS = new HashMap<>();
+
+	static {
+		ACCESSORS.put("cardinality", Accessor.CARDINALITY);
+		ACCESSORS.put("first", Accessor.FIRST);
+		ACCESSORS.put("members", Accessor.MEMBERS);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.stringtemplate.v4.ModelAdaptor#getProperty(org.stringtemplate.v4.
+	 * Interpreter, org.stringtemplate.v4.ST, java.lang.Object,
+	 * java.lang.Object, java.lang.String)
+	 */
+	@Override
+	public Object getProperty(Interpreter interp, ST self, Object o,
+			Object property, String propertyName)
+			throws STNoSuchPropertyException {
+		Accessor accessor = propertyName == null ? null : ACCESSORS
+				.get(propertyName);
+		if (accessor == null) {
+			throw new STNoSuchPropertyException(null, o, propertyName);
+		}
+		return accessor.get((Cluster<?>) o);
+	}
+}
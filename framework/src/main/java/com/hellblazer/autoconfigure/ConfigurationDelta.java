@@ -0,0 +1,190 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.hellblazer.autoconfigure.configuration.Configuration;
+import com.hellblazer.autoconfigure.configuration.Template;
+
+/**
+ * The difference between a running configuration and a reloaded one, limited
+ * to the parts of the configuration that can be applied to a running service:
+ * the substitution variables, the templates and the service properties.
+ *
+ * @author hhildebrand
+ *
+ */
+public class ConfigurationDelta {
+    /**
+     * @param running
+     *            - the running configuration
+     * @param reloaded
+     *            - the reloaded configuration
+     * @return the delta between the configurations
+     */
+    public static ConfigurationDelta between(Configuration running,
+	    Configuration reloaded) {
+	ConfigurationDelta delta = new ConfigurationDelta();
+	Map<String, String> variables = orEmpty(running.variables);
+	Map<String, String> updatedVariables = orEmpty(reloaded.variables);
+	Set<String> names = new HashSet<>(variables.keySet());
+	names.addAll(updatedVariables.keySet());
+	for (String name : names) {
+	    if (!equal(variables.get(name), updatedVariables.get(name))) {
+		delta.variables.add(name);
+	    }
+	}
+
+	Map<String, Template> templates = byName(running.templates);
+	Map<String, Template> updatedTemplates = byName(reloaded.templates);
+	for (Map.Entry<String, Template> entry : templates.entrySet()) {
+	    Template updated = updatedTemplates.get(entry.getKey());
+	    if (updated == null || !equal(entry.getValue(), updated)) {
+		delta.removedTemplates.add(entry.getValue());
+	    }
+	}
+	for (Map.Entry<String, Template> entry : updatedTemplates.entrySet()) {
+	    Template current = templates.get(entry.getKey());
+	    if (current == null || !equal(current, entry.getValue())) {
+		delta.addedTemplates.add(entry.getValue());
+	    }
+	}
+
+	Map<String, String> properties = orEmpty(running.serviceProperties);
+	Map<String, String> updatedProperties = orEmpty(reloaded.serviceProperties);
+	for (Map.Entry<String, String> entry : updatedProperties.entrySet()) {
+	    if (!equal(entry.getValue(), properties.get(entry.getKey()))) {
+		delta.changedProperties.put(entry.getKey(), entry.getValue());
+	    }
+	}
+	for (String property : properties.keySet()) {
+	    if (!updatedProperties.containsKey(property)) {
+		delta.removedProperties.add(property);
+	    }
+	}
+	return delta;
+    }
+
+    private static Map<String, Template> byName(List<Template> templates) {
+	Map<String, Template> byName = new HashMap<>();
+	if (templates != null) {
+	    for (Template template : templates) {
+		byName.put(template.name, template);
+	    }
+	}
+	return byName;
+    }
+
+    private static boolean equal(Object a, Object b) {
+	return a == null ? b == null : a.equals(b);
+    }
+
+    private static boolean equal(Template a, Template b) {
+	return equal(a.generated, b.generated) && equal(a.template, b.template)
+		&& equal(a.templateGroup, b.templateGroup)
+		&& equal(a.thisServiceName, b.thisServiceName);
+    }
+
+    private static Map<String, String> orEmpty(Map<String, String> map) {
+	return map == null ? Collections.<String, String> emptyMap() : map;
+    }
+
+    private final List<Template> addedTemplates = new ArrayList<>();
+    private final Map<String, String> changedProperties = new HashMap<>();
+    private final List<Template> removedTemplates = new ArrayList<>();
+    private final Set<String> removedProperties = new HashSet<>();
+    private final Set<String> variables = new HashSet<>();
+
+    private ConfigurationDelta() {
+    }
+
+    /**
+     * @return the templates that have been added, or whose definition has
+     *         changed
+     */
+    public List<Template> getAddedTemplates() {
+	return addedTemplates;
+    }
+
+    /**
+     * @return the service properties that have been added or changed
+     */
+    public Map<String, String> getChangedProperties() {
+	return changedProperties;
+    }
+
+    /**
+     * @return the names of the variables that have been added, changed or
+     *         removed
+     */
+    public Set<String> getChangedVariables() {
+	return variables;
+    }
+
+    /**
+     * @return the templates that have been removed, or whose definition has
+     *         changed
+     */
+    public List<Template> getRemovedTemplates() {
+	return removedTemplates;
+    }
+
+    /**
+     * @return the names of the service properties that have been removed
+     */
+    public Set<String> getRemovedProperties() {
+	return removedProperties;
+    }
+
+    /**
+     * @return true if the configurations do not differ
+     */
+    public boolean isEmpty() {
+	return variables.isEmpty() && addedTemplates.isEmpty()
+		&& removedTemplates.isEmpty() && changedProperties.isEmpty()
+		&& removedProperties.isEmpty();
+    }
+
+    /**
+     * @return true if the service properties differ
+     */
+    public boolean isPropertiesChanged() {
+	return !changedProperties.isEmpty() || !removedProperties.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+	return String
+		.format("ConfigurationDelta [variables: %s, added templates: %s, removed templates: %s, changed properties: %s, removed properties: %s]",
+			variables, names(addedTemplates),
+			names(removedTemplates), changedProperties.keySet(),
+			removedProperties);
+    }
+
+    private List<String> names(List<Template> templates) {
+	List<String> names = new ArrayList<>();
+	for (Template template : templates) {
+	    names.add(template.name);
+	}
+	return names;
+    }
+}
@@ -0,0 +1,200 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The pending result of an asynchronous auto configuration: the map of
+ * template names to generated configuration files. The future is settable
+ * only by the configuration process, through {@link #complete(Map)} and
+ * {@link #fail(Throwable)}. Listeners may be added to compose further work on
+ * completion, and cancelling the future cancels the discovery rendezvous of
+ * the configuration process.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public class ConfigurationFuture implements Future<Map<String, File>> {
+    private static class Listener {
+	private final Executor executor;
+	private final Runnable listener;
+
+	private Listener(Runnable listener, Executor executor) {
+	    this.listener = listener;
+	    this.executor = executor;
+	}
+
+	private void execute() {
+	    try {
+		executor.execute(listener);
+	    } catch (RejectedExecutionException e) {
+		logger.error(String.format(
+			"Unable to run configuration listener %s", listener), e);
+	    }
+	}
+    }
+
+    private static enum State {
+	CANCELLED, COMPLETED, FAILED, PENDING;
+    }
+
+    private static final Logger logger = LoggerFactory
+	    .getLogger(ConfigurationFuture.class);
+
+    private Throwable cause;
+    private Map<String, File> configurations;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Runnable onCancel;
+    private State state = State.PENDING;
+
+    /**
+     * @param onCancel
+     *            - the action run when the future is cancelled, or null
+     */
+    public ConfigurationFuture(Runnable onCancel) {
+	this.onCancel = onCancel;
+    }
+
+    /**
+     * Run the listener using the executor when the configuration completes,
+     * successfully or not. If the configuration has already completed, the
+     * listener is run immediately.
+     * 
+     * @param listener
+     * @param executor
+     */
+    public void addListener(Runnable listener, Executor executor) {
+	Listener entry = new Listener(listener, executor);
+	synchronized (this) {
+	    if (state == State.PENDING) {
+		listeners.add(entry);
+		return;
+	    }
+	}
+	entry.execute();
+    }
+
+    /**
+     * Cancel the configuration. The configuration process is never
+     * interrupted; the cancellation action supplied on construction is run
+     * instead.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+	if (!transition(State.CANCELLED, null, null)) {
+	    return false;
+	}
+	if (onCancel != null) {
+	    onCancel.run();
+	}
+	return true;
+    }
+
+    /**
+     * Complete the future with the generated configurations
+     * 
+     * @param configurations
+     */
+    public void complete(Map<String, File> configurations) {
+	transition(State.COMPLETED, configurations, null);
+    }
+
+    /**
+     * Complete the future exceptionally
+     * 
+     * @param cause
+     */
+    public void fail(Throwable cause) {
+	transition(State.FAILED, null, cause);
+    }
+
+    @Override
+    public Map<String, File> get() throws InterruptedException,
+	    ExecutionException {
+	done.await();
+	return result();
+    }
+
+    @Override
+    public Map<String, File> get(long timeout, TimeUnit unit)
+	    throws InterruptedException, ExecutionException, TimeoutException {
+	if (!done.await(timeout, unit)) {
+	    throw new TimeoutException();
+	}
+	return result();
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+	return state == State.CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+	return state != State.PENDING;
+    }
+
+    private synchronized Map<String, File> result() throws ExecutionException {
+	switch (state) {
+	    case CANCELLED:
+		throw new CancellationException("Configuration cancelled");
+	    case FAILED:
+		throw new ExecutionException(cause);
+	    default:
+		return configurations;
+	}
+    }
+
+    /**
+     * Complete the future, if it is pending, and run the listeners
+     * 
+     * @return true if the future was pending
+     */
+    private boolean transition(State completion,
+	    Map<String, File> configurations, Throwable cause) {
+	List<Listener> pending;
+	synchronized (this) {
+	    if (state != State.PENDING) {
+		return false;
+	    }
+	    state = completion;
+	    this.configurations = configurations;
+	    this.cause = cause;
+	    pending = new ArrayList<>(listeners);
+	    listeners.clear();
+	}
+	done.countDown();
+	for (Listener listener : pending) {
+	    listener.execute();
+	}
+	return true;
+    }
+}
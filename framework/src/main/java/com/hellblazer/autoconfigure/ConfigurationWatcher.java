@@ -0,0 +1,193 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hellblazer.autoconfigure.configuration.Configuration;
+import com.hellblazer.autoconfigure.configuration.ConfigurationSnapshot;
+import com.hellblazer.autoconfigure.configuration.YamlHelper;
+
+/**
+ * Watches the auto configuration YAML file, and reloads the configuration
+ * each time the content of the file changes. The directory of the file is
+ * watched by a daemon thread, and repeated events for the same content are
+ * ignored.
+ *
+ * @author hhildebrand
+ *
+ */
+public class ConfigurationWatcher implements Closeable {
+    /**
+     * The action applying a reloaded configuration
+     */
+    public interface Reload {
+	/**
+	 * @param configuration
+	 *            - the reloaded configuration
+	 * @return true if the configuration was applied, false if it cannot be
+	 *         applied yet and must be reloaded by a later poll
+	 */
+	boolean reload(Configuration configuration);
+    }
+
+    private static final Logger logger = LoggerFactory
+	    .getLogger(ConfigurationWatcher.class);
+
+    private volatile String digest;
+    private final Path file;
+    private final Reload reload;
+    private final Thread thread;
+    private final WatchService watcher;
+
+    /**
+     * @param file
+     *            - the configuration YAML file
+     * @param reload
+     *            - the action applying the reloaded configuration
+     * @throws IOException
+     *             - if the directory of the file cannot be watched
+     */
+    public ConfigurationWatcher(File file, Reload reload) throws IOException {
+	this.file = file.getAbsoluteFile().toPath();
+	this.reload = reload;
+	digest = digestOf();
+	watcher = this.file.getFileSystem().newWatchService();
+	this.file.getParent().register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+	thread = new Thread(new Runnable() {
+	    @Override
+	    public void run() {
+		watch();
+	    }
+	}, String.format("autoconfigure watcher [%s]", file.getName()));
+	thread.setDaemon(true);
+    }
+
+    /**
+     * Stop watching the configuration file
+     */
+    @Override
+    public void close() {
+	try {
+	    watcher.close();
+	} catch (IOException e) {
+	    logger.trace("Unable to close watch service", e);
+	}
+    }
+
+    /**
+     * Reload the configuration, if the content of the file has changed since
+     * it was last applied. The content is only recorded as applied once the
+     * reload action has applied it, so a change the action cannot yet apply
+     * is reloaded by the next poll.
+     *
+     * @return true if the configuration was reloaded and applied
+     */
+    public synchronized boolean poll() {
+	byte[] content;
+	try {
+	    content = Files.readAllBytes(file);
+	} catch (IOException e) {
+	    logger.warn(String.format("Unable to read configuration [%s]",
+		    file), e);
+	    return false;
+	}
+	String current = ConfigurationSnapshot.digest(content);
+	if (current.equals(digest)) {
+	    return false;
+	}
+	Configuration configuration;
+	try {
+	    configuration = YamlHelper.fromYaml(new ByteArrayInputStream(
+		    content));
+	} catch (IOException e) {
+	    logger.warn(String.format(
+		    "Unable to parse configuration [%s], ignoring change", file),
+		    e);
+	    return false;
+	}
+	logger.info(String.format("Reloading configuration [%s]", file));
+	try {
+	    if (!reload.reload(configuration)) {
+		logger.info(String.format(
+			"Reloaded configuration [%s] not yet applied", file));
+		return false;
+	    }
+	} catch (Throwable e) {
+	    logger.error(String.format("Unable to reload configuration [%s]",
+		    file), e);
+	    return false;
+	}
+	digest = current;
+	return true;
+    }
+
+    /**
+     * Start watching the configuration file
+     */
+    public void start() {
+	thread.start();
+    }
+
+    private String digestOf() {
+	try {
+	    return ConfigurationSnapshot.digest(Files.readAllBytes(file));
+	} catch (IOException e) {
+	    return null;
+	}
+    }
+
+    private void watch() {
+	Path name = file.getFileName();
+	while (true) {
+	    WatchKey key;
+	    try {
+		key = watcher.take();
+	    } catch (InterruptedException | ClosedWatchServiceException e) {
+		return;
+	    }
+	    boolean changed = false;
+	    for (WatchEvent<?> event : key.pollEvents()) {
+		if (name.equals(event.context())) {
+		    changed = true;
+		}
+	    }
+	    if (changed) {
+		poll();
+	    }
+	    if (!key.reset()) {
+		logger.warn(String.format(
+			"Configuration directory of [%s] is no longer watched",
+			file));
+		return;
+	    }
+	}
+    }
+}
@@ -0,0 +1,325 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stringtemplate.v4.AutoIndentWriter;
+import org.stringtemplate.v4.ST;
+
+/**
+ * Writes generated configuration files. The output of a template is streamed
+ * to a temporary file in the directory of the generated file, which is then
+ * atomically renamed to the generated file. A crash while writing never
+ * leaves a partially written configuration behind.
+ * <p>
+ * By default each file, and its directory, is synced as it is written. When
+ * using group commit, the files are not made visible until {@link #commit()},
+ * which syncs all the outputs and their directories at once.
+ * <p>
+ * The digest of every output is computed as it is written, so that an
+ * unchanged output need not replace the existing generated file.
+ *
+ * @author hhildebrand
+ *
+ */
+public class ConfigurationWriter {
+    /**
+     * The result of writing a generated file
+     */
+    public static class Output {
+	/**
+	 * The digest of the generated content
+	 */
+	public final String digest;
+	/**
+	 * The number of bytes generated
+	 */
+	public final long size;
+
+	private Output(String digest, long size) {
+	    this.digest = digest;
+	    this.size = size;
+	}
+    }
+
+    private static class Pending {
+	private final Path target;
+	private final Path temporary;
+
+	private Pending(Path temporary, Path target) {
+	    this.temporary = temporary;
+	    this.target = target;
+	}
+    }
+
+    public static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final Logger logger = LoggerFactory
+	    .getLogger(ConfigurationWriter.class);
+
+    /**
+     * @return a new message digest used to identify the content of generated
+     *         files
+     */
+    public static MessageDigest newDigest() {
+	try {
+	    return MessageDigest.getInstance(DIGEST_ALGORITHM);
+	} catch (NoSuchAlgorithmException e) {
+	    throw new IllegalStateException(String.format(
+		    "Digest algorithm %s is not available", DIGEST_ALGORITHM), e);
+	}
+    }
+
+    /**
+     * Move the temporary file into place, replacing the target. The move is
+     * atomic where the file system supports it; otherwise the target is
+     * replaced by a non atomic move.
+     * 
+     * @param temporary
+     * @param target
+     * @throws IOException
+     */
+    public static void move(Path temporary, Path target) throws IOException {
+	try {
+	    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+		    StandardCopyOption.ATOMIC_MOVE);
+	} catch (AtomicMoveNotSupportedException e) {
+	    logger.debug(String.format(
+		    "Atomic move not supported, replacing [%s]", target));
+	    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+	}
+    }
+
+    /**
+     * @param bytes
+     * @return the hexadecimal representation of the bytes
+     */
+    public static String toHex(byte[] bytes) {
+	char[] hex = new char[bytes.length * 2];
+	for (int i = 0; i < bytes.length; i++) {
+	    hex[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+	    hex[i * 2 + 1] = HEX[bytes[i] & 0xF];
+	}
+	return new String(hex);
+    }
+
+    private final Charset charset;
+    private final boolean groupCommit;
+    private final List<Pending> pending = new ArrayList<>();
+
+    public ConfigurationWriter(boolean groupCommit) {
+	this(groupCommit, Charset.defaultCharset());
+    }
+
+    public ConfigurationWriter(boolean groupCommit, Charset charset) {
+	this.groupCommit = groupCommit;
+	this.charset = charset;
+    }
+
+    /**
+     * Discard any outputs that have not been committed
+     */
+    public void abort() {
+	for (Pending output : drain()) {
+	    try {
+		Files.deleteIfExists(output.temporary);
+	    } catch (IOException e) {
+		logger.warn(String.format("Unable to delete temporary file [%s]",
+			output.temporary), e);
+	    }
+	}
+    }
+
+    /**
+     * Sync and make visible all the outputs written since the last commit.
+     * This is a no-op unless using group commit.
+     *
+     * @throws IOException
+     */
+    public void commit() throws IOException {
+	List<Pending> outputs = drain();
+	if (outputs.isEmpty()) {
+	    return;
+	}
+	for (Pending output : outputs) {
+	    try (FileChannel channel = FileChannel.open(output.temporary,
+		    StandardOpenOption.WRITE)) {
+		channel.force(true);
+	    }
+	}
+	Set<Path> directories = new LinkedHashSet<>();
+	for (Pending output : outputs) {
+	    move(output.temporary, output.target);
+	    directories.add(output.target.getParent());
+	}
+	for (Path directory : directories) {
+	    sync(directory);
+	}
+    }
+
+    /**
+     * Render the template into the generated file
+     *
+     * @param st
+     *            - the template to render
+     * @param generated
+     *            - the generated configuration file
+     * @return the digest of the generated content
+     * @throws IOException
+     */
+    public String write(ST st, File generated) throws IOException {
+	return write(st, generated, null);
+    }
+
+    /**
+     * Render the template into the generated file, leaving the generated file
+     * untouched if its content would not change.
+     *
+     * @param st
+     *            - the template to render
+     * @param generated
+     *            - the generated configuration file
+     * @param existing
+     *            - the digest of the existing generated file, or null if
+     *            unknown
+     * @return the digest of the generated content
+     * @throws IOException
+     */
+    public String write(ST st, File generated, String existing)
+	    throws IOException {
+	return writeOutput(st, generated, existing).digest;
+    }
+
+    /**
+     * Render the template into the generated file, leaving the generated file
+     * untouched if its content would not change.
+     * 
+     * @param st
+     *            - the template to render
+     * @param generated
+     *            - the generated configuration file
+     * @param existing
+     *            - the digest of the existing generated file, or null if
+     *            unknown
+     * @return the digest and size of the generated content
+     * @throws IOException
+     */
+    public Output writeOutput(ST st, File generated, String existing)
+	    throws IOException {
+	Path target = generated.toPath().toAbsolutePath();
+	Path temporary = target.resolveSibling(String.format(".%s.%s.tmp",
+		target.getFileName(), UUID.randomUUID()));
+	MessageDigest digest = newDigest();
+	boolean written = false;
+	long size;
+	try (FileChannel channel = FileChannel.open(temporary,
+		StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+	    Writer writer = new BufferedWriter(new OutputStreamWriter(
+		    new DigestOutputStream(new BufferedOutputStream(
+			    Channels.newOutputStream(channel), BUFFER_SIZE),
+			    digest), charset), BUFFER_SIZE);
+	    st.write(new AutoIndentWriter(writer));
+	    writer.flush();
+	    size = channel.size();
+	    if (!groupCommit) {
+		channel.force(true);
+	    }
+	    written = true;
+	} finally {
+	    if (!written) {
+		Files.deleteIfExists(temporary);
+	    }
+	}
+	String hash = toHex(digest.digest());
+	if (hash.equals(existing) && Files.exists(target)) {
+	    Files.delete(temporary);
+	    return new Output(hash, size);
+	}
+	copyPermissions(target, temporary);
+	if (groupCommit) {
+	    synchronized (pending) {
+		pending.add(new Pending(temporary, target));
+	    }
+	    return new Output(hash, size);
+	}
+	move(temporary, target);
+	sync(target.getParent());
+	return new Output(hash, size);
+    }
+
+    /**
+     * Preserve the permissions of an existing generated file
+     */
+    private void copyPermissions(Path target, Path temporary) {
+	if (!Files.exists(target)) {
+	    return;
+	}
+	try {
+	    Files.setPosixFilePermissions(temporary,
+		    Files.getPosixFilePermissions(target));
+	} catch (UnsupportedOperationException | IOException e) {
+	    logger.trace(String.format("Unable to copy permissions of [%s]",
+		    target), e);
+	}
+    }
+
+    private List<Pending> drain() {
+	synchronized (pending) {
+	    List<Pending> drained = new ArrayList<>(pending);
+	    pending.clear();
+	    return drained;
+	}
+    }
+
+    /**
+     * Sync the directory, making renames within it durable. Not every platform
+     * supports this, so failures are ignored.
+     */
+    private void sync(Path directory) {
+	try (FileChannel channel = FileChannel.open(directory,
+		StandardOpenOption.READ)) {
+	    channel.force(true);
+	} catch (IOException e) {
+	    logger.trace(String.format("Unable to sync directory [%s]",
+		    directory), e);
+	}
+    }
+}
@@ -0,0 +1,167 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock free rendezvous for the discovery of the services required by the
+ * auto configuration process. Each party is a distinct member of a service
+ * collection or a singleton service; callers are responsible for arriving
+ * only once per distinct member. The rendezvous completes exactly once,
+ * either by running the action when the last party arrives, or by running
+ * the cancellation when cancelled before then.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public class DiscoveryRendezvous {
+    private static final int CANCELLED = 2;
+    private static final int COMPLETED = 1;
+    private static final int OPEN = 0;
+
+    private final Runnable action;
+    private final Runnable cancellation;
+    private final int parties;
+    private final AtomicInteger remaining;
+    private final AtomicInteger state = new AtomicInteger(OPEN);
+    private volatile ScheduledFuture<?> timeout;
+
+    /**
+     * @param parties
+     *            - the number of distinct arrivals required
+     * @param action
+     *            - the action run when all the parties have arrived
+     * @param cancellation
+     *            - the action run if the rendezvous is cancelled
+     */
+    public DiscoveryRendezvous(int parties, Runnable action,
+	    Runnable cancellation) {
+	if (parties < 0) {
+	    throw new IllegalArgumentException(String.format(
+		    "Parties must be non negative: %s", parties));
+	}
+	this.parties = parties;
+	this.action = action;
+	this.cancellation = cancellation;
+	remaining = new AtomicInteger(parties);
+    }
+
+    /**
+     * Note the arrival of a party. The action is run by the thread whose
+     * arrival completes the rendezvous.
+     * 
+     * @return true if this arrival completed the rendezvous
+     */
+    public boolean arrive() {
+	if (state.get() != OPEN) {
+	    return false;
+	}
+	if (remaining.decrementAndGet() != 0) {
+	    return false;
+	}
+	if (!state.compareAndSet(OPEN, COMPLETED)) {
+	    return false;
+	}
+	ScheduledFuture<?> scheduled = timeout;
+	if (scheduled != null) {
+	    scheduled.cancel(false);
+	}
+	if (action != null) {
+	    action.run();
+	}
+	return true;
+    }
+
+    /**
+     * Cancel the rendezvous, running the cancellation action if the
+     * rendezvous has not already completed
+     * 
+     * @return true if the rendezvous was cancelled by this call
+     */
+    public boolean cancel() {
+	if (!state.compareAndSet(OPEN, CANCELLED)) {
+	    return false;
+	}
+	ScheduledFuture<?> scheduled = timeout;
+	if (scheduled != null) {
+	    scheduled.cancel(false);
+	}
+	if (cancellation != null) {
+	    cancellation.run();
+	}
+	return true;
+    }
+
+    /**
+     * @return the number of distinct arrivals required
+     */
+    public int getParties() {
+	return parties;
+    }
+
+    /**
+     * @return the number of parties that have yet to arrive
+     */
+    public int getRemaining() {
+	return Math.max(0, remaining.get());
+    }
+
+    public boolean isCancelled() {
+	return state.get() == CANCELLED;
+    }
+
+    public boolean isCompleted() {
+	return state.get() == COMPLETED;
+    }
+
+    /**
+     * Cancel the rendezvous if it has not completed within the timeout. The
+     * scheduler only triggers the cancellation, which is run by the executor.
+     * 
+     * @param delay
+     * @param unit
+     * @param scheduler
+     * @param executor
+     *            - the executor running the cancellation
+     */
+    public void scheduleCancellation(long delay, TimeUnit unit,
+	    ScheduledExecutorService scheduler, final Executor executor) {
+	timeout = scheduler.schedule(new Runnable() {
+	    @Override
+	    public void run() {
+		executor.execute(new Runnable() {
+		    @Override
+		    public void run() {
+			cancel();
+		    }
+		});
+	    }
+	}, delay, unit);
+	if (state.get() != OPEN) {
+	    timeout.cancel(false);
+	}
+    }
+
+    @Override
+    public String toString() {
+	return String.format("DiscoveryRendezvous [%s of %s remaining]",
+		getRemaining(), parties);
+    }
+}
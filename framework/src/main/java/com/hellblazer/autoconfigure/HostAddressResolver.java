@@ -0,0 +1,351 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hellblazer.autoconfigure.configuration.AddressResolution;
+import com.hellblazer.autoconfigure.configuration.Configuration;
+
+/**
+ * Determines the address this service is bound to. The address is selected
+ * from the addresses of the network interface, preferring addresses within
+ * the configured networks, then addresses of the preferred family, then
+ * addresses that are not link local. The host name of the selected address is
+ * determined according to the {@link AddressResolution} policy.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public class HostAddressResolver {
+    /**
+     * A network, in CIDR notation, e.g. 10.0.0.0/8 or fd00::/8. A literal
+     * address without a prefix length denotes just that address.
+     */
+    public static class Network {
+	private final byte[] address;
+	private final int prefixLength;
+
+	public Network(String cidr) {
+	    int slash = cidr.indexOf('/');
+	    String literal = slash < 0 ? cidr : cidr.substring(0, slash);
+	    if (!isLiteral(literal)) {
+		throw new IllegalArgumentException(String.format(
+			"Network [%s] is not a literal address", cidr));
+	    }
+	    try {
+		address = InetAddress.getByName(literal).getAddress();
+	    } catch (UnknownHostException e) {
+		throw new IllegalArgumentException(String.format(
+			"Invalid network [%s]", cidr), e);
+	    }
+	    try {
+		prefixLength = slash < 0 ? address.length * 8 : Integer
+			.parseInt(cidr.substring(slash + 1));
+	    } catch (NumberFormatException e) {
+		throw new IllegalArgumentException(String.format(
+			"Invalid prefix length of network [%s]", cidr), e);
+	    }
+	    if (prefixLength < 0 || prefixLength > address.length * 8) {
+		throw new IllegalArgumentException(String.format(
+			"Invalid prefix length of network [%s]", cidr));
+	    }
+	}
+
+	/**
+	 * @param candidate
+	 * @return true if the address is within this network
+	 */
+	public boolean contains(InetAddress candidate) {
+	    byte[] bytes = candidate.getAddress();
+	    if (bytes.length != address.length) {
+		return false;
+	    }
+	    int remaining = prefixLength;
+	    for (int i = 0; remaining > 0; i++, remaining -= 8) {
+		int mask = remaining >= 8 ? 0xFF : (0xFF << (8 - remaining)) & 0xFF;
+		if ((bytes[i] & mask) != (address[i] & mask)) {
+		    return false;
+		}
+	    }
+	    return true;
+	}
+    }
+
+    private static final Pattern IPV4_LITERAL = Pattern
+	    .compile("\\d{1,3}(\\.\\d{1,3}){3}");
+    private static final Logger logger = LoggerFactory
+	    .getLogger(HostAddressResolver.class);
+    private static final ConcurrentMap<InetAddress, String> NAMES = new ConcurrentHashMap<>();
+
+    /**
+     * @param config
+     * @return the resolver configured for the auto configuration
+     */
+    public static HostAddressResolver from(Configuration config) {
+	List<Network> networks = new ArrayList<>();
+	for (String cidr : config.preferredNetworks) {
+	    networks.add(new Network(cidr));
+	}
+	return new HostAddressResolver(config.addressResolution, config.ipV6,
+		networks, config.resolutionTimeout);
+    }
+
+    /**
+     * @param host
+     * @return true if the host is a literal IPv4 or IPv6 address, which is
+     *         resolved without consulting the resolver
+     */
+    public static boolean isLiteral(String host) {
+	return IPV4_LITERAL.matcher(host).matches() || host.indexOf(':') >= 0;
+    }
+
+    /**
+     * @param address
+     * @return the address, named by its literal form so that neither the
+     *         address nor its name need be resolved
+     */
+    public static InetAddress literal(InetAddress address) {
+	return named(address, address.getHostAddress());
+    }
+
+    /**
+     * @param host
+     *            - the host name of the address
+     * @param hostAddress
+     *            - the literal address
+     * @return the address with the host name, constructed without consulting
+     *         the resolver
+     * @throws IllegalArgumentException
+     *             - if the host address is not a literal address
+     */
+    public static InetAddress named(String host, String hostAddress) {
+	if (!isLiteral(hostAddress)) {
+	    throw new IllegalArgumentException(String.format(
+		    "[%s] is not a literal address", hostAddress));
+	}
+	try {
+	    return named(InetAddress.getByName(hostAddress), host);
+	} catch (UnknownHostException e) {
+	    throw new IllegalArgumentException(String.format(
+		    "Invalid literal address [%s]", hostAddress), e);
+	}
+    }
+
+    private static InetAddress named(InetAddress address, String host) {
+	try {
+	    if (address instanceof Inet6Address) {
+		return Inet6Address.getByAddress(host, address.getAddress(),
+			((Inet6Address) address).getScopeId());
+	    }
+	    return InetAddress.getByAddress(host, address.getAddress());
+	} catch (UnknownHostException e) {
+	    throw new IllegalStateException(String.format(
+		    "Invalid address [%s]", address), e);
+	}
+    }
+
+    private final List<Network> networks;
+    private final boolean preferIpV6;
+    private final AddressResolution resolution;
+    private final long timeout;
+
+    /**
+     * @param resolution
+     *            - the policy determining the host name of the address
+     * @param preferIpV6
+     *            - if true, prefer IPv6 addresses, otherwise prefer IPv4
+     *            addresses
+     * @param networks
+     *            - the preferred networks, in order of preference
+     * @param timeout
+     *            - the time, in milliseconds, to wait for the resolution of a
+     *            cached name
+     */
+    public HostAddressResolver(AddressResolution resolution,
+	    boolean preferIpV6, List<Network> networks, long timeout) {
+	this.resolution = resolution;
+	this.preferIpV6 = preferIpV6;
+	this.networks = networks;
+	this.timeout = timeout;
+    }
+
+    /**
+     * Determine the address to bind to from the addresses of the interface
+     * 
+     * @param iface
+     * @return the address to bind to
+     * @throws IllegalStateException
+     *             - if the interface has no addresses, or the address cannot
+     *             be resolved
+     */
+    public InetAddress resolve(NetworkInterface iface) {
+	List<InetAddress> candidates = new ArrayList<>();
+	for (Enumeration<InetAddress> addresses = iface.getInetAddresses(); addresses
+		.hasMoreElements();) {
+	    candidates.add(addresses.nextElement());
+	}
+	InetAddress raw = select(candidates);
+	if (raw == null) {
+	    String msg = String
+		    .format("Unable to find any network address for interface[%s] {%s}",
+			    iface.getName(), iface.getDisplayName());
+	    logger.error(msg);
+	    throw new IllegalStateException(msg);
+	}
+	return name(raw);
+    }
+
+    /**
+     * Determine the host name of the address, according to the resolution
+     * policy
+     * 
+     * @param raw
+     *            - the address
+     * @return the named address
+     * @throws IllegalStateException
+     *             - if the address cannot be resolved using the canonical
+     *             policy
+     */
+    public InetAddress name(final InetAddress raw) {
+	switch (resolution) {
+	    case LITERAL:
+		return literal(raw);
+	    case CACHED_NAME: {
+		String host = NAMES.get(raw);
+		if (host == null) {
+		    host = lookup(raw);
+		}
+		return named(raw, host);
+	    }
+	    default:
+		try {
+		    return InetAddress.getByName(raw.getCanonicalHostName());
+		} catch (UnknownHostException e) {
+		    String msg = String.format(
+			    "Unable to resolve network address [%s]", raw);
+		    logger.error(msg, e);
+		    throw new IllegalStateException(msg, e);
+		}
+	}
+    }
+
+    /**
+     * Select the preferred address
+     * 
+     * @param candidates
+     * @return the preferred address, or null if there are no candidates
+     */
+    public InetAddress select(List<InetAddress> candidates) {
+	if (candidates.isEmpty()) {
+	    return null;
+	}
+	List<InetAddress> ranked = new ArrayList<>(candidates);
+	Collections.sort(ranked, new Comparator<InetAddress>() {
+	    @Override
+	    public int compare(InetAddress a, InetAddress b) {
+		int networkA = networkIndex(a);
+		int networkB = networkIndex(b);
+		if (networkA != networkB) {
+		    return networkA < networkB ? -1 : 1;
+		}
+		boolean familyA = isPreferredFamily(a);
+		if (familyA != isPreferredFamily(b)) {
+		    return familyA ? -1 : 1;
+		}
+		boolean localA = a.isLinkLocalAddress();
+		if (localA != b.isLinkLocalAddress()) {
+		    return localA ? 1 : -1;
+		}
+		return 0;
+	    }
+	});
+	InetAddress selected = ranked.get(0);
+	if (!isPreferredFamily(selected)) {
+	    logger.warn(String.format(
+		    "No %s address available, using [%s]",
+		    preferIpV6 ? "IPv6" : "IPv4", selected));
+	}
+	return selected;
+    }
+
+    private boolean isPreferredFamily(InetAddress address) {
+	return preferIpV6 ? address instanceof Inet6Address
+			 : address instanceof Inet4Address;
+    }
+
+    /**
+     * Reverse resolve the address on a separate thread, waiting no longer than
+     * the timeout. A lookup that times out continues in the background, so
+     * that its result is cached for subsequent resolutions.
+     */
+    private String lookup(final InetAddress raw) {
+	FutureTask<String> task = new FutureTask<>(new Callable<String>() {
+	    @Override
+	    public String call() {
+		String host = raw.getCanonicalHostName();
+		NAMES.put(raw, host);
+		return host;
+	    }
+	});
+	Thread thread = new Thread(task, String.format("Resolve %s",
+		raw.getHostAddress()));
+	thread.setDaemon(true);
+	thread.start();
+	try {
+	    return task.get(timeout, TimeUnit.MILLISECONDS);
+	} catch (TimeoutException e) {
+	    logger.warn(String.format(
+		    "Unable to resolve [%s] within %s ms, using literal address",
+		    raw, timeout));
+	} catch (ExecutionException e) {
+	    logger.warn(String.format(
+		    "Unable to resolve [%s], using literal address", raw),
+		    e.getCause());
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	return raw.getHostAddress();
+    }
+
+    private int networkIndex(InetAddress address) {
+	for (int i = 0; i < networks.size(); i++) {
+	    if (networks.get(i).contains(address)) {
+		return i;
+	    }
+	}
+	return networks.size();
+    }
+}
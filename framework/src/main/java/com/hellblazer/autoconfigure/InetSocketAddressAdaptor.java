@@ -15,6 +15,8 @@
 package com.hellblazer.autoconfigure;
 
 import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.stringtemplate.v4.Interpreter;
 import org.stringtemplate.v4.ModelAdaptor;
@@ -29,20 +31,41 @@ import org.stringtemplate.v4.misc.STNoSuchPropertyException;
  *
  */
 public class InetSocketAddressAdaptor implements ModelAdaptor {
+    private static enum Accessor {
+        HOST {
+            @Override
+            Object get(InetSocketAddress address) {
+                return address.getHostName();
+            }
+        },
+        PORT {
+            @Override
+            Object get(InetSocketAddress address) {
+                return address.getPort();
+            }
+        };
+
+        abstract Object get(InetSocketAddress address);
+    }
+
+    private static final Map<String, Accessor> ACCESSORS = new HashMap<>();
+
+    static {
+        ACCESSORS.put("port", Accessor.PORT);
+        // adapt hostName -> host
+        ACCESSORS.put("host", Accessor.HOST);
+    }
 
     @Override
     public Object getProperty(Interpreter interp, ST self, Object o,
                               Object property, String propertyName)
             throws STNoSuchPropertyException {
-        InetSocketAddress address = (InetSocketAddress) o;
-        if (propertyName.equals("port")) {
-            return address.getPort();
-        }
-        // adapt hostName -> host
-        if (propertyName.equals("host")) {
-            return address.getHostName();
+        Accessor accessor = propertyName == null ? null
+                                                : ACCESSORS.get(propertyName);
+        if (accessor == null) {
+            throw new STNoSuchPropertyException(null, o, propertyName);
         }
-        throw new STNoSuchPropertyException(null, o, propertyName);
+        return accessor.get((InetSocketAddress) o);
     }
 
 }
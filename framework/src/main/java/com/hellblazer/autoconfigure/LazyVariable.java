@@ -0,0 +1,84 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import com.hellblazer.autoconfigure.configuration.VariableSupplier;
+
+/**
+ * A substitution variable whose value is supplied when first bound to a
+ * template, and memoized for the remaining templates.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public class LazyVariable {
+    /**
+     * @param value
+     * @return the value of the variable, resolving it if it is lazy
+     */
+    public static Object resolve(Object value) {
+	if (value instanceof LazyVariable) {
+	    return ((LazyVariable) value).get();
+	}
+	return value;
+    }
+
+    private final String name;
+    private volatile boolean resolved;
+    private final VariableSupplier<?> supplier;
+    private Object value;
+
+    public LazyVariable(String name, VariableSupplier<?> supplier) {
+	this.name = name;
+	this.supplier = supplier;
+    }
+
+    /**
+     * @return the value of the variable, supplying it on first access
+     */
+    public Object get() {
+	if (!resolved) {
+	    synchronized (this) {
+		if (!resolved) {
+		    try {
+			value = supplier.supply();
+		    } catch (RuntimeException e) {
+			throw e;
+		    } catch (Exception e) {
+			throw new IllegalStateException(String.format(
+				"Unable to resolve variable [%s]", name), e);
+		    }
+		    resolved = true;
+		}
+	    }
+	}
+	return value;
+    }
+
+    /**
+     * @return true if the value of the variable has been supplied
+     */
+    public boolean isResolved() {
+	return resolved;
+    }
+
+    @Override
+    public String toString() {
+	if (resolved) {
+	    return String.valueOf(value);
+	}
+	return String.format("<lazy %s>", name);
+    }
+}
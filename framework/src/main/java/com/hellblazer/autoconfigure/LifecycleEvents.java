@@ -0,0 +1,131 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hellblazer.autoconfigure.configuration.Template;
+
+/**
+ * Records the activity of the auto configuration process - discovery events,
+ * rendezvous arrivals, template rendering, property publication and restart
+ * state I/O - as Java Flight Recorder events. The recorder is loaded
+ * reflectively, so that the framework runs on JVMs without Flight Recorder,
+ * where no events are recorded.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public abstract class LifecycleEvents {
+    public static final String JFR_EVENTS = "com.hellblazer.autoconfigure.jfr.JfrLifecycleEvents";
+
+    /**
+     * The recorder used when Flight Recorder is not available
+     */
+    public static final LifecycleEvents NONE = new LifecycleEvents() {
+    };
+
+    private static final Logger logger = LoggerFactory
+	    .getLogger(LifecycleEvents.class);
+
+    /**
+     * @return the Flight Recorder event recorder, or a recorder that records
+     *         nothing if Flight Recorder is not available
+     */
+    public static LifecycleEvents load() {
+	try {
+	    Class.forName("jdk.jfr.Event");
+	    return (LifecycleEvents) Class.forName(JFR_EVENTS).newInstance();
+	} catch (ClassNotFoundException | LinkageError e) {
+	    logger.trace("Flight Recorder events are not available", e);
+	} catch (InstantiationException | IllegalAccessException e) {
+	    logger.warn("Unable to create Flight Recorder events", e);
+	}
+	return NONE;
+    }
+
+    /**
+     * @return a token for a template rendering, or null if renderings are not
+     *         recorded
+     */
+    public Object beginRender() {
+	return null;
+    }
+
+    /**
+     * @return a token for a restart state read or write, or null if restart
+     *         state I/O is not recorded
+     */
+    public Object beginRestartState() {
+	return null;
+    }
+
+    /**
+     * @param render
+     *            - the token returned by {@link #beginRender()}
+     * @param template
+     *            - the rendered template
+     * @param bytes
+     *            - the size of the generated output
+     * @param changed
+     *            - true if the generated output changed
+     */
+    public void endRender(Object render, Template template, long bytes,
+	    boolean changed) {
+    }
+
+    /**
+     * @param token
+     *            - the token returned by {@link #beginRestartState()}
+     * @param file
+     *            - the restart state file
+     * @param write
+     *            - true if the state was written, false if read
+     */
+    public void endRestartState(Object token, String file, boolean write) {
+    }
+
+    /**
+     * @param registration
+     *            - the registration of this service
+     * @param properties
+     *            - the number of properties published
+     */
+    public void propertiesPublished(UUID registration, int properties) {
+    }
+
+    /**
+     * @param serviceUrl
+     *            - the service arriving at the rendezvous
+     * @param remaining
+     *            - the number of services the rendezvous still waits for
+     */
+    public void rendezvousArrival(Object serviceUrl, int remaining) {
+    }
+
+    /**
+     * @param type
+     *            - the type of the service event
+     * @param serviceUrl
+     *            - the service of the event
+     * @param definition
+     *            - the required service definition handling the event
+     */
+    public void serviceEvent(String type, Object serviceUrl, Object definition) {
+    }
+}
@@ -0,0 +1,284 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hellblazer.autoconfigure.configuration.ExecutionMode;
+import com.hellblazer.slp.ServiceEvent;
+import com.hellblazer.slp.ServiceListener;
+
+/**
+ * Executes the lifecycle actions of the auto configuration process according
+ * to the configured {@link ExecutionMode}, so that blocking work in the
+ * actions does not hold up the thread delivering discovery events.
+ * <p>
+ * Virtual threads are obtained reflectively, as the framework is compiled for
+ * JVMs that predate them.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public class LifecycleExecutor implements Executor {
+    /**
+     * Runs the tasks submitted to it one at a time, in submission order, on
+     * the underlying executor
+     */
+    private class SerialExecutor implements Executor {
+	private Runnable active;
+	private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+	@Override
+	public synchronized void execute(final Runnable task) {
+	    tasks.add(new Runnable() {
+		@Override
+		public void run() {
+		    try {
+			task.run();
+		    } finally {
+			scheduleNext();
+		    }
+		}
+	    });
+	    if (active == null) {
+		scheduleNext();
+	    }
+	}
+
+	/**
+	 * Run the next task on the underlying executor. If the executor rejects
+	 * the task, e.g. because it has been shut down, the queued tasks are
+	 * dropped and the rejection is rethrown, leaving the receiver idle so
+	 * that later submissions are rejected as well rather than queued
+	 * forever.
+	 */
+	private synchronized void scheduleNext() {
+	    active = tasks.poll();
+	    if (active != null) {
+		try {
+		    LifecycleExecutor.this.execute(active);
+		} catch (RejectedExecutionException e) {
+		    int dropped = tasks.size() + 1;
+		    tasks.clear();
+		    active = null;
+		    logger.error(String.format(
+			    "Lifecycle executor rejected the dispatch, dropping %s queued actions",
+			    dropped), e);
+		    throw e;
+		}
+	    }
+	}
+    }
+
+    private static final Logger logger = LoggerFactory
+	    .getLogger(LifecycleExecutor.class);
+
+    /**
+     * @param mode
+     *            - the execution mode
+     * @param poolSize
+     *            - the maximum number of threads of the pool used by the
+     *            POOLED mode, and by the VIRTUAL mode when virtual threads are
+     *            not available
+     * @return the executor for the mode
+     */
+    public static LifecycleExecutor create(ExecutionMode mode, int poolSize) {
+	switch (mode) {
+	case INLINE:
+	    return new LifecycleExecutor(null, false);
+	case POOLED:
+	    return new LifecycleExecutor(boundedPool(poolSize), false);
+	case VIRTUAL:
+	    ExecutorService virtual = virtualThreadPerTask();
+	    if (virtual != null) {
+		return new LifecycleExecutor(virtual, true);
+	    }
+	    logger.info(String.format(
+		    "Virtual threads are not available, using a pool of %s threads",
+		    poolSize));
+	    return new LifecycleExecutor(boundedPool(poolSize), false);
+	default:
+	    throw new IllegalArgumentException(String.format(
+		    "Unknown execution mode %s", mode));
+	}
+    }
+
+    private static ExecutorService boundedPool(int poolSize) {
+	if (poolSize < 1) {
+	    throw new IllegalArgumentException(String.format(
+		    "Lifecycle pool size must be positive: %s", poolSize));
+	}
+	final AtomicInteger count = new AtomicInteger();
+	ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize,
+		60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+		new ThreadFactory() {
+		    @Override
+		    public Thread newThread(Runnable r) {
+			Thread daemon = new Thread(r, String.format(
+				"Auto Configuration Lifecycle[%s]",
+				count.incrementAndGet()));
+			daemon.setDaemon(true);
+			return daemon;
+		    }
+		});
+	pool.allowCoreThreadTimeOut(true);
+	return pool;
+    }
+
+    /**
+     * @return a virtual thread per task executor, or null if the JVM does not
+     *         support virtual threads
+     */
+    private static ExecutorService virtualThreadPerTask() {
+	try {
+	    Method factory = java.util.concurrent.Executors.class
+		    .getMethod("newVirtualThreadPerTaskExecutor");
+	    return (ExecutorService) factory.invoke(null);
+	} catch (NoSuchMethodException | IllegalAccessException e) {
+	    return null;
+	} catch (InvocationTargetException e) {
+	    logger.warn("Unable to create virtual thread executor",
+		    e.getCause());
+	    return null;
+	}
+    }
+
+    private final ExecutorService executor;
+    private final boolean virtual;
+
+    private LifecycleExecutor(ExecutorService executor, boolean virtual) {
+	this.executor = executor;
+	this.virtual = virtual;
+    }
+
+    /**
+     * Answer an executor that never runs an action on the thread submitting
+     * it: this executor, or a new daemon thread per action if actions run
+     * inline. Timers hand their actions to it, so that the timer thread,
+     * which may be shared by every instance in the process, only triggers
+     * the actions.
+     * 
+     * @return the detached executor
+     */
+    public Executor detached() {
+	if (!isInline()) {
+	    return this;
+	}
+	return new Executor() {
+	    @Override
+	    public void execute(Runnable action) {
+		Thread thread = new Thread(action,
+			"Auto Configuration Lifecycle");
+		thread.setDaemon(true);
+		thread.start();
+	    }
+	};
+    }
+
+    /**
+     * Wrap the listener so that its events are dispatched on this executor,
+     * preserving the order in which the events were delivered
+     * 
+     * @param listener
+     * @return the dispatching listener, or the listener itself if actions
+     *         run inline
+     */
+    public ServiceListener dispatching(final ServiceListener listener) {
+	if (isInline()) {
+	    return listener;
+	}
+	final Executor serial = new SerialExecutor();
+	return new ServiceListener() {
+	    @Override
+	    public void serviceChanged(final ServiceEvent event) {
+		serial.execute(new Runnable() {
+		    @Override
+		    public void run() {
+			try {
+			    listener.serviceChanged(event);
+			} catch (Throwable e) {
+			    logger.error(String.format(
+				    "Error dispatching service event %s", event),
+				    e);
+			}
+		    }
+		});
+	    }
+	};
+    }
+
+    @Override
+    public void execute(Runnable action) {
+	if (executor == null) {
+	    action.run();
+	    return;
+	}
+	executor.execute(action);
+    }
+
+    /**
+     * @return true if actions are run on the thread that triggers them
+     */
+    public boolean isInline() {
+	return executor == null;
+    }
+
+    /**
+     * @return true if actions are run on virtual threads
+     */
+    public boolean isVirtual() {
+	return virtual;
+    }
+
+    /**
+     * @param action
+     * @return the action, run on this executor when it is run
+     */
+    public Runnable onExecutor(final Runnable action) {
+	if (isInline()) {
+	    return action;
+	}
+	return new Runnable() {
+	    @Override
+	    public void run() {
+		execute(action);
+	    }
+	};
+    }
+
+    /**
+     * Shut down the underlying executor, allowing submitted actions to
+     * complete
+     */
+    public void shutdown() {
+	if (executor != null) {
+	    executor.shutdown();
+	}
+    }
+}
@@ -0,0 +1,174 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.hellblazer.slp.ServiceEvent;
+import com.hellblazer.slp.ServiceListener;
+import com.hellblazer.slp.ServiceReference;
+
+/**
+ * A single service listener registered on the discovery scope on behalf of
+ * all the required service definitions. The definitions are indexed by
+ * service type and, within a type, by the first of their required
+ * properties, so that each event is dispatched only to the listeners of the
+ * definitions it matches, rather than being evaluated against the filter of
+ * every definition.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public class MultiplexingServiceListener implements ServiceListener {
+    private static class Definition {
+	private final ServiceFilter filter;
+	private final ServiceListener listener;
+
+	private Definition(ServiceFilter filter, ServiceListener listener) {
+	    this.filter = filter;
+	    this.listener = listener;
+	}
+    }
+
+    /**
+     * The definitions of a single service type
+     */
+    private static class TypeIndex {
+	/**
+	 * property name -> property value -> definitions requiring that value
+	 */
+	private final Map<String, Map<String, List<Definition>>> byProperty = new HashMap<>();
+	private final List<Definition> unconstrained = new ArrayList<>();
+
+	private void add(Definition definition) {
+	    if (definition.filter.getProperties().isEmpty()) {
+		unconstrained.add(definition);
+		return;
+	    }
+	    Map.Entry<String, String> key = definition.filter.getProperties()
+		    .entrySet()
+		    .iterator().next();
+	    Map<String, List<Definition>> values = byProperty.get(key
+		    .getKey());
+	    if (values == null) {
+		values = new HashMap<>();
+		byProperty.put(key.getKey(), values);
+	    }
+	    List<Definition> definitions = values.get(key.getValue());
+	    if (definitions == null) {
+		definitions = new ArrayList<>();
+		values.put(key.getValue(), definitions);
+	    }
+	    definitions.add(definition);
+	}
+
+	private void match(Map<String, String> serviceProperties,
+		List<ServiceListener> matched) {
+	    for (Definition definition : unconstrained) {
+		matched.add(definition.listener);
+	    }
+	    for (Map.Entry<String, Map<String, List<Definition>>> entry : byProperty
+		    .entrySet()) {
+		String value = serviceProperties.get(entry.getKey());
+		if (value == null) {
+		    continue;
+		}
+		List<Definition> definitions = entry.getValue().get(value);
+		if (definitions == null) {
+		    continue;
+		}
+		for (Definition definition : definitions) {
+		    if (definition.filter.matches(serviceProperties)) {
+			matched.add(definition.listener);
+		    }
+		}
+	    }
+	}
+    }
+
+    private final List<ServiceFilter> filters = new ArrayList<>();
+    private final Map<String, TypeIndex> types = new HashMap<>();
+
+    /**
+     * Add a required service definition. Definitions must all be added before
+     * the listener is registered.
+     * 
+     * @param filter
+     *            - the filter of the definition
+     * @param listener
+     *            - the listener receiving the events of matching services
+     */
+    public void add(ServiceFilter filter, ServiceListener listener) {
+	TypeIndex index = types.get(filter.getServiceType());
+	if (index == null) {
+	    index = new TypeIndex();
+	    types.put(filter.getServiceType(), index);
+	}
+	index.add(new Definition(filter, listener));
+	filters.add(filter);
+    }
+
+    /**
+     * @return the query filter matching any of the added definitions
+     */
+    public String constructFilter() {
+	if (filters.size() == 1) {
+	    return filters.get(0).toString();
+	}
+	StringBuilder builder = new StringBuilder();
+	builder.append("(|");
+	for (ServiceFilter filter : filters) {
+	    builder.append(filter);
+	}
+	builder.append(')');
+	return builder.toString();
+    }
+
+    /**
+     * @return true if no definitions have been added
+     */
+    public boolean isEmpty() {
+	return filters.isEmpty();
+    }
+
+    /**
+     * @param reference
+     * @return the listeners of the definitions matching the service
+     */
+    public List<ServiceListener> match(ServiceReference reference) {
+	Map<String, String> properties = reference.getProperties();
+	if (properties == null) {
+	    properties = Collections.emptyMap();
+	}
+	TypeIndex index = types.get(ServiceFilter.serviceTypeOf(reference));
+	if (index == null) {
+	    return Collections.emptyList();
+	}
+	List<ServiceListener> matched = new ArrayList<>(1);
+	index.match(properties, matched);
+	return matched;
+    }
+
+    @Override
+    public void serviceChanged(ServiceEvent event) {
+	for (ServiceListener listener : match(event.getReference())) {
+	    listener.serviceChanged(event);
+	}
+    }
+}
@@ -0,0 +1,213 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The ports reserved for a configured service: the service port registered in
+ * the discovery scope, and each of the additional ports. All ports are
+ * reserved in one pass over the configured port range, and each port is held
+ * by a bound server socket channel until the service claims it, so that no
+ * other process can take the port in the meantime.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public class PortReservation implements Closeable {
+    /**
+     * The name of the reserved service port
+     */
+    public static final String SERVICE_PORT = "autoconfigure.service.port";
+
+    private static final Logger logger = LoggerFactory
+	    .getLogger(PortReservation.class);
+    private static final Random RANDOM = new Random();
+
+    /**
+     * @param range
+     *            - the port range, in the form "low-high", inclusive
+     * @return the low and high ports of the range, or null if the range is
+     *         null, in which case ports are allocated by the operating system
+     * @throws IllegalArgumentException
+     *             - if the range is invalid
+     */
+    public static int[] parseRange(String range) {
+	if (range == null || range.trim().isEmpty()) {
+	    return null;
+	}
+	int dash = range.indexOf('-');
+	int low;
+	int high;
+	try {
+	    if (dash < 0) {
+		low = high = Integer.parseInt(range.trim());
+	    } else {
+		low = Integer.parseInt(range.substring(0, dash).trim());
+		high = Integer.parseInt(range.substring(dash + 1).trim());
+	    }
+	} catch (NumberFormatException e) {
+	    throw new IllegalArgumentException(String.format(
+		    "Invalid port range [%s]", range), e);
+	}
+	if (low <= 0 || high > 0xFFFF || low > high) {
+	    throw new IllegalArgumentException(String.format(
+		    "Invalid port range [%s]", range));
+	}
+	return new int[] { low, high };
+    }
+
+    /**
+     * Reserve the service port and the named additional ports
+     * 
+     * @param address
+     *            - the address to bind the ports to
+     * @param range
+     *            - the port range to reserve the ports from, in the form
+     *            "low-high", or null to have the operating system allocate
+     *            the ports
+     * @param additionalPorts
+     *            - the names of the additional ports
+     * @return the reservation
+     * @throws IOException
+     *             - if the ports cannot be bound
+     * @throws IllegalStateException
+     *             - if the range does not have enough free ports
+     */
+    public static PortReservation reserve(InetAddress address, String range,
+	    Collection<String> additionalPorts) throws IOException {
+	PortReservation reservation = new PortReservation();
+	boolean reserved = false;
+	try {
+	    int[] bounds = parseRange(range);
+	    int required = additionalPorts.size() + 1;
+	    String[] names = new String[required];
+	    names[0] = SERVICE_PORT;
+	    int n = 1;
+	    for (String name : additionalPorts) {
+		names[n++] = name;
+	    }
+	    if (bounds == null) {
+		for (String name : names) {
+		    reservation.channels.put(name, bind(address, 0));
+		}
+	    } else {
+		int size = bounds[1] - bounds[0] + 1;
+		// start at a random offset, so that instances sharing the host
+		// do not contend for the same ports
+		int offset = RANDOM.nextInt(size);
+		int next = 0;
+		for (int i = 0; i < size && next < required; i++) {
+		    int port = bounds[0] + (offset + i) % size;
+		    ServerSocketChannel channel;
+		    try {
+			channel = bind(address, port);
+		    } catch (BindException e) {
+			continue;
+		    }
+		    reservation.channels.put(names[next++], channel);
+		}
+		if (next < required) {
+		    String msg = String.format(
+			    "Unable to reserve %s ports in range [%s] on [%s]",
+			    required, range, address);
+		    logger.error(msg);
+		    throw new IllegalStateException(msg);
+		}
+	    }
+	    reserved = true;
+	    return reservation;
+	} finally {
+	    if (!reserved) {
+		reservation.close();
+	    }
+	}
+    }
+
+    private static ServerSocketChannel bind(InetAddress address, int port)
+	    throws IOException {
+	ServerSocketChannel channel = ServerSocketChannel.open();
+	try {
+	    channel.bind(new InetSocketAddress(address, port));
+	} catch (IOException e) {
+	    channel.close();
+	    throw e;
+	}
+	return channel;
+    }
+
+    private final Map<String, ServerSocketChannel> channels = new LinkedHashMap<>();
+
+    private PortReservation() {
+    }
+
+    /**
+     * Claim the bound channels of the reservation. The caller is responsible
+     * for closing the claimed channels.
+     * 
+     * @return the map of port names to the bound channels, including the
+     *         service port as {@link #SERVICE_PORT}
+     */
+    public synchronized Map<String, ServerSocketChannel> claim() {
+	Map<String, ServerSocketChannel> claimed = new LinkedHashMap<>(
+		channels);
+	channels.clear();
+	return claimed;
+    }
+
+    /**
+     * Release the unclaimed ports of the reservation
+     */
+    @Override
+    public synchronized void close() {
+	for (Map.Entry<String, ServerSocketChannel> entry : channels.entrySet()) {
+	    try {
+		entry.getValue().close();
+	    } catch (IOException e) {
+		logger.trace(String.format("Unable to close port [%s]",
+			entry.getKey()), e);
+	    }
+	}
+	channels.clear();
+    }
+
+    /**
+     * @param name
+     *            - the name of the additional port, or {@link #SERVICE_PORT}
+     * @return the reserved port
+     * @throws IllegalArgumentException
+     *             - if the port has not been reserved, or has been claimed
+     */
+    public synchronized int getPort(String name) {
+	ServerSocketChannel channel = channels.get(name);
+	if (channel == null) {
+	    throw new IllegalArgumentException(String.format(
+		    "Port [%s] is not reserved", name));
+	}
+	return channel.socket().getLocalPort();
+    }
+}
@@ -0,0 +1,307 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hellblazer.autoconfigure.configuration.RestartState;
+import com.hellblazer.autoconfigure.configuration.RestartState.ServiceState;
+import com.hellblazer.autoconfigure.configuration.Template;
+
+/**
+ * Records the content digests of the generated configuration files and of the
+ * template groups they were generated from in the restart state, and verifies
+ * them when the service is restarted. Only the templates whose generated
+ * configuration or template group has drifted since the restart state was
+ * saved need to be regenerated, using the variables saved with the state.
+ *
+ * @author hhildebrand
+ *
+ */
+public class RestartVerifier {
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final Logger logger = LoggerFactory
+	    .getLogger(RestartVerifier.class);
+
+    /**
+     * @param file
+     * @return the digest of the content of the file, or null if the file does
+     *         not exist
+     * @throws IOException
+     */
+    public static String digest(File file) throws IOException {
+	if (!file.isFile()) {
+	    return null;
+	}
+	return digest(file.toURI().toURL());
+    }
+
+    /**
+     * @param url
+     * @return the digest of the content of the resource
+     * @throws IOException
+     */
+    public static String digest(URL url) throws IOException {
+	MessageDigest digest = ConfigurationWriter.newDigest();
+	update(digest, url);
+	return ConfigurationWriter.toHex(digest.digest());
+    }
+
+    /**
+     * Reconstruct the variables saved with the restart state
+     *
+     * @param state
+     * @return the map of variable names to values
+     */
+    public static Map<String, Object> restoreVariables(RestartState state) {
+	Map<String, Object> variables = new HashMap<>();
+	if (state.variables != null) {
+	    variables.putAll(state.variables);
+	}
+	if (state.services != null) {
+	    for (Map.Entry<String, ServiceState> entry : state.services
+		    .entrySet()) {
+		variables.put(entry.getKey(), entry.getValue().toService());
+	    }
+	}
+	if (state.clusters != null) {
+	    for (Map.Entry<String, List<ServiceState>> entry : state.clusters
+		    .entrySet()) {
+		List<Service> members = new ArrayList<>();
+		for (ServiceState member : entry.getValue()) {
+		    members.add(member.toService());
+		}
+		variables.put(entry.getKey(), new Cluster<>(members));
+	    }
+	}
+	return variables;
+    }
+
+    /**
+     * Save the resolved variables in the restart state. Variables that have
+     * not been resolved, and variables whose values are supplied by the
+     * configuration, are not saved.
+     *
+     * @param state
+     * @param variables
+     *            - the variables used to generate the configurations
+     * @param supplied
+     *            - the names of the variables supplied by the configuration
+     */
+    public static void saveVariables(RestartState state,
+	    Map<String, Object> variables, Set<String> supplied) {
+	state.variables = new HashMap<>();
+	state.services = new HashMap<>();
+	state.clusters = new HashMap<>();
+	if (variables == null) {
+	    return;
+	}
+	for (Map.Entry<String, Object> entry : variables.entrySet()) {
+	    if (supplied.contains(entry.getKey())) {
+		continue;
+	    }
+	    Object value = entry.getValue();
+	    if (value instanceof LazyVariable) {
+		if (!((LazyVariable) value).isResolved()) {
+		    continue;
+		}
+		value = ((LazyVariable) value).get();
+	    }
+	    if (value == null) {
+		continue;
+	    }
+	    if (value instanceof Service) {
+		state.services.put(entry.getKey(), ServiceState.from((Service) value));
+	    } else if (value instanceof Cluster) {
+		List<ServiceState> members = new ArrayList<>();
+		for (Object member : ((Cluster<?>) value).getMembers()) {
+		    members.add(ServiceState.from((Service) member));
+		}
+		state.clusters.put(entry.getKey(), members);
+	    } else {
+		state.variables.put(entry.getKey(), String.valueOf(value));
+	    }
+	}
+    }
+
+    private final TemplateGroupCache templateGroups;
+    private final List<Template> templates;
+
+    public RestartVerifier(List<Template> templates,
+	    TemplateGroupCache templateGroups) {
+	this.templates = templates;
+	this.templateGroups = templateGroups;
+    }
+
+    /**
+     * Verify the generated configurations and template groups against the
+     * digests recorded in the restart state, in parallel.
+     *
+     * @param state
+     *            - the restart state
+     * @param pool
+     *            - the pool used to compute the digests
+     * @param current
+     *            - receives the digests of the existing generated
+     *            configuration files, keyed by absolute path
+     * @return the templates whose generated configuration or template group
+     *         has drifted
+     */
+    public List<Template> drifted(final RestartState state,
+	    ForkJoinPool pool, final Map<String, String> current) {
+	final Map<String, String> groupDigests = new ConcurrentHashMap<>();
+	final boolean[] drift = new boolean[templates.size()];
+	final List<RecursiveAction> verifications = new ArrayList<>();
+	for (int i = 0; i < templates.size(); i++) {
+	    final int index = i;
+	    final Template template = templates.get(i);
+	    verifications.add(new RecursiveAction() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void compute() {
+		    drift[index] = drifted(template, state, groupDigests,
+			    current);
+		}
+	    });
+	}
+	pool.invoke(new RecursiveAction() {
+	    private static final long serialVersionUID = 1L;
+
+	    @Override
+	    protected void compute() {
+		invokeAll(verifications);
+	    }
+	});
+	List<Template> drifted = new ArrayList<>();
+	for (int i = 0; i < drift.length; i++) {
+	    if (drift[i]) {
+		drifted.add(templates.get(i));
+	    }
+	}
+	return drifted;
+    }
+
+    /**
+     * Record the digests of the generated configurations and their template
+     * groups in the restart state
+     *
+     * @param state
+     *            - the restart state
+     * @param generated
+     *            - the known digests of the generated configuration files,
+     *            keyed by absolute path
+     */
+    public void record(RestartState state, Map<String, String> generated) {
+	state.generatedDigests = new HashMap<>();
+	state.templateDigests = new HashMap<>();
+	for (Template template : templates) {
+	    String key = template.generated.getAbsolutePath();
+	    String digest = generated.get(key);
+	    try {
+		if (digest == null) {
+		    digest = digest(template.generated);
+		}
+		if (!state.templateDigests
+			.containsKey(template.templateGroup)) {
+		    state.templateDigests.put(template.templateGroup,
+			    templateDigest(template.templateGroup));
+		}
+	    } catch (IOException | IllegalArgumentException e) {
+		logger.warn(String.format(
+			"Unable to record the digests of template [%s]",
+			template.name), e);
+		continue;
+	    }
+	    if (digest != null) {
+		state.generatedDigests.put(key, digest);
+	    }
+	}
+    }
+
+    private boolean drifted(Template template, RestartState state,
+	    Map<String, String> groupDigests, Map<String, String> current) {
+	String key = template.generated.getAbsolutePath();
+	try {
+	    String generated = digest(template.generated);
+	    if (generated != null) {
+		current.put(key, generated);
+	    }
+	    String expected = state.generatedDigests == null ? null
+		    : state.generatedDigests.get(key);
+	    if (generated == null || !generated.equals(expected)) {
+		logger.info(String.format(
+			"Generated configuration [%s] has drifted", key));
+		return true;
+	    }
+	    String group = groupDigests.get(template.templateGroup);
+	    if (group == null) {
+		group = templateDigest(template.templateGroup);
+		groupDigests.put(template.templateGroup, group);
+	    }
+	    String expectedGroup = state.templateDigests == null ? null
+		    : state.templateDigests.get(template.templateGroup);
+	    if (!group.equals(expectedGroup)) {
+		logger.info(String.format(
+			"Template group [%s] of [%s] has changed",
+			template.templateGroup, key));
+		return true;
+	    }
+	    return false;
+	} catch (IOException | IllegalArgumentException e) {
+	    logger.warn(String.format(
+		    "Unable to verify generated configuration [%s]", key), e);
+	    return true;
+	}
+    }
+
+    /**
+     * @param templateGroup
+     * @return the digest of the content of the template group file and of the
+     *         group files it imports
+     * @throws IOException
+     */
+    private String templateDigest(String templateGroup) throws IOException {
+	return TemplateGroupCache.digest(templateGroups
+		.getSources(templateGroup));
+    }
+
+    private static void update(MessageDigest digest, URL url)
+	    throws IOException {
+	byte[] buffer = new byte[BUFFER_SIZE];
+	try (InputStream is = new BufferedInputStream(url.openStream(),
+		BUFFER_SIZE)) {
+	    for (int read = is.read(buffer); read >= 0; read = is.read(buffer)) {
+		digest.update(buffer, 0, read);
+	    }
+	}
+    }
+}
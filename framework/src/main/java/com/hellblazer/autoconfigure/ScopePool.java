@@ -0,0 +1,176 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hellblazer.gossip.configuration.GossipConfiguration;
+import com.hellblazer.nexus.GossipScope;
+import com.hellblazer.slp.ServiceScope;
+
+/**
+ * A pool of discovery scopes shared by the auto configured services of a
+ * process. Scopes are keyed by their gossip seed set, so that services
+ * joining the same cluster share one gossip endpoint, its threads and its
+ * heartbeat traffic. Scopes are reference counted: a scope is started when it
+ * is first leased, and stopped when its last lease is released.
+ * <p>
+ * The first configuration leasing a seed set determines the gossip
+ * configuration, e.g. the endpoint, of the shared scope.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public class ScopePool {
+    /**
+     * A lease of a shared discovery scope
+     */
+    public class Lease {
+	private final String key;
+	private boolean released;
+	private final ServiceScope scope;
+
+	private Lease(String key, ServiceScope scope) {
+	    this.key = key;
+	    this.scope = scope;
+	}
+
+	public ServiceScope getScope() {
+	    return scope;
+	}
+
+	/**
+	 * Release the lease, stopping the scope if this is its last lease.
+	 * Releasing a lease more than once has no effect.
+	 */
+	public void release() {
+	    synchronized (ScopePool.this) {
+		if (released) {
+		    return;
+		}
+		released = true;
+	    }
+	    ScopePool.this.release(key);
+	}
+    }
+
+    private static class Shared {
+	private int references;
+	private final ServiceScope scope;
+
+	private Shared(ServiceScope scope) {
+	    this.scope = scope;
+	}
+    }
+
+    private static final ScopePool DEFAULT = new ScopePool();
+    private static final Logger logger = LoggerFactory
+	    .getLogger(ScopePool.class);
+
+    /**
+     * @return the process wide scope pool
+     */
+    public static ScopePool getDefault() {
+	return DEFAULT;
+    }
+
+    /**
+     * @param gossip
+     * @return the key of the shared scope for the gossip configuration: its
+     *         seed set, independent of order
+     */
+    public static String keyOf(GossipConfiguration gossip) {
+	List<String> seeds = new ArrayList<>();
+	if (gossip.seeds != null) {
+	    for (InetSocketAddress seed : gossip.seeds) {
+		seeds.add(String.valueOf(seed));
+	    }
+	}
+	Collections.sort(seeds);
+	return seeds.toString();
+    }
+
+    private final Map<String, Shared> scopes = new HashMap<>();
+
+    /**
+     * Lease the shared scope for the gossip configuration, constructing and
+     * starting the scope if it is not already shared
+     * 
+     * @param gossip
+     * @return the lease of the shared scope
+     * @throws SocketException
+     *             - if the scope cannot be constructed
+     */
+    public synchronized Lease acquire(GossipConfiguration gossip)
+	    throws SocketException {
+	String key = keyOf(gossip);
+	Shared shared = scopes.get(key);
+	if (shared == null) {
+	    shared = new Shared(construct(gossip));
+	    shared.scope.start();
+	    scopes.put(key, shared);
+	    logger.info(String.format("Started shared discovery scope for seeds %s",
+		    key));
+	}
+	shared.references++;
+	return new Lease(key, shared.scope);
+    }
+
+    /**
+     * @param gossip
+     * @return the number of leases of the shared scope for the gossip
+     *         configuration
+     */
+    public synchronized int getReferences(GossipConfiguration gossip) {
+	Shared shared = scopes.get(keyOf(gossip));
+	return shared == null ? 0 : shared.references;
+    }
+
+    /**
+     * Construct the discovery scope for the gossip configuration
+     * 
+     * @param gossip
+     * @return the discovery scope
+     * @throws SocketException
+     */
+    protected ServiceScope construct(GossipConfiguration gossip)
+	    throws SocketException {
+	return new GossipScope(gossip.construct());
+    }
+
+    private void release(String key) {
+	ServiceScope stopped;
+	synchronized (this) {
+	    Shared shared = scopes.get(key);
+	    if (shared == null || --shared.references > 0) {
+		return;
+	    }
+	    scopes.remove(key);
+	    stopped = shared.scope;
+	}
+	logger.info(String.format("Stopping shared discovery scope for seeds %s",
+		key));
+	stopped.stop();
+    }
+}
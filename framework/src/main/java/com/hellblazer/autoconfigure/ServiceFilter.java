@@ -0,0 +1,223 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.hellblazer.slp.ServiceReference;
+import com.hellblazer.slp.ServiceScope;
+import com.hellblazer.slp.ServiceURL;
+
+/**
+ * An immutable query filter for a required service: the service type and the
+ * exact values of its required properties. The LDAP style filter string used
+ * to register listeners on the discovery scope is built once, with the values
+ * escaped, and the filter can match services directly without parsing.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public final class ServiceFilter {
+    public static class Builder {
+	private final SortedMap<String, String> properties = new TreeMap<>();
+	private final String serviceType;
+
+	private Builder(String serviceType) {
+	    if (serviceType == null) {
+		throw new IllegalArgumentException(
+			"Service type must not be null");
+	    }
+	    this.serviceType = serviceType;
+	}
+
+	public ServiceFilter build() {
+	    return new ServiceFilter(serviceType, properties);
+	}
+
+	public Builder properties(Map<String, String> properties) {
+	    if (properties != null) {
+		for (Map.Entry<String, String> entry : properties.entrySet()) {
+		    property(entry.getKey(), entry.getValue());
+		}
+	    }
+	    return this;
+	}
+
+	public Builder property(String key, String value) {
+	    if (key == null || value == null) {
+		throw new IllegalArgumentException(String.format(
+			"Invalid filter property [%s=%s] for service [%s]", key,
+			value, serviceType));
+	    }
+	    properties.put(key, value);
+	    return this;
+	}
+    }
+
+    /**
+     * @param serviceType
+     * @return a builder of a filter for the service type
+     */
+    public static Builder builder(String serviceType) {
+	return new Builder(serviceType);
+    }
+
+    /**
+     * Escape the characters with special meaning in a filter value
+     * 
+     * @param value
+     * @return the escaped value
+     */
+    public static String escape(String value) {
+	StringBuilder builder = null;
+	for (int i = 0; i < value.length(); i++) {
+	    char c = value.charAt(i);
+	    switch (c) {
+	    case '\\':
+	    case '*':
+	    case '(':
+	    case ')':
+		if (builder == null) {
+		    builder = new StringBuilder(value.length() + 8);
+		    builder.append(value, 0, i);
+		}
+		builder.append('\\');
+		break;
+	    default:
+		break;
+	    }
+	    if (builder != null) {
+		builder.append(c);
+	    }
+	}
+	return builder == null ? value : builder.toString();
+    }
+
+    /**
+     * @param reference
+     * @return the service type of the referenced service, or null if it
+     *         cannot be determined
+     */
+    public static String serviceTypeOf(ServiceReference reference) {
+	Map<String, String> properties = reference.getProperties();
+	String serviceType = properties == null ? null : properties
+		.get(ServiceScope.SERVICE_TYPE);
+	if (serviceType != null) {
+	    return serviceType;
+	}
+	ServiceURL url = reference.getUrl();
+	if (url == null || url.getServiceType() == null) {
+	    return null;
+	}
+	return url.getServiceType().toString();
+    }
+
+    private final String filter;
+    private final SortedMap<String, String> properties;
+    private final String serviceType;
+
+    private ServiceFilter(String serviceType, SortedMap<String, String> properties) {
+	this.serviceType = serviceType;
+	this.properties = Collections
+		.unmodifiableSortedMap(new TreeMap<>(properties));
+	StringBuilder builder = new StringBuilder();
+	if (!properties.isEmpty()) {
+	    builder.append("(&");
+	}
+	append(builder, ServiceScope.SERVICE_TYPE, serviceType);
+	for (Map.Entry<String, String> entry : properties.entrySet()) {
+	    append(builder, entry.getKey(), entry.getValue());
+	}
+	if (!properties.isEmpty()) {
+	    builder.append(')');
+	}
+	filter = builder.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+	if (this == obj) {
+	    return true;
+	}
+	if (!(obj instanceof ServiceFilter)) {
+	    return false;
+	}
+	return filter.equals(((ServiceFilter) obj).filter);
+    }
+
+    /**
+     * @return the required properties, sorted by key
+     */
+    public SortedMap<String, String> getProperties() {
+	return properties;
+    }
+
+    public String getServiceType() {
+	return serviceType;
+    }
+
+    @Override
+    public int hashCode() {
+	return filter.hashCode();
+    }
+
+    /**
+     * @param serviceProperties
+     * @return true if the properties contain every required property value
+     */
+    public boolean matches(Map<String, String> serviceProperties) {
+	for (Map.Entry<String, String> entry : properties.entrySet()) {
+	    if (!entry.getValue().equals(serviceProperties.get(entry.getKey()))) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * @param reference
+     * @return true if the referenced service is of the filter's service type
+     *         and has every required property value
+     */
+    public boolean matches(ServiceReference reference) {
+	if (!serviceType.equals(serviceTypeOf(reference))) {
+	    return false;
+	}
+	Map<String, String> serviceProperties = reference.getProperties();
+	if (serviceProperties == null) {
+	    return properties.isEmpty();
+	}
+	return matches(serviceProperties);
+    }
+
+    /**
+     * @return the LDAP style filter string
+     */
+    @Override
+    public String toString() {
+	return filter;
+    }
+
+    private void append(StringBuilder builder, String key, String value) {
+	builder.append('(');
+	builder.append(key);
+	builder.append('=');
+	builder.append(escape(value));
+	builder.append(')');
+    }
+}
@@ -14,6 +14,9 @@
  */
 package com.hellblazer.autoconfigure;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.stringtemplate.v4.Interpreter;
 import org.stringtemplate.v4.ModelAdaptor;
 import org.stringtemplate.v4.ST;
@@ -26,6 +29,44 @@ import org.stringtemplate.v4.misc.STNoSuchPropertyException;
  * 
  */
 public class ServiceModelAdaptor implements ModelAdaptor {
+	private static enum Accessor {
+		HOST {
+			@Override
+			Object get(Service service) {
+				return service.getHost();
+			}
+		},
+		PORT {
+			@Override
+			Object get(Service service) {
+				return service.getPort();
+			}
+		};
+
+		abstract Object get(Service service);
+	}
+
+	private static final Map<String, Accessor> ACCESSORS = new HashMap<>();
+
+	static {
+		ACCESSORS.put("host", Accessor.HOST);
+		ACCESSORS.put("port", Accessor.PORT);
+	}
+
+	private final Object missing;
+
+	public ServiceModelAdaptor() {
+		this(null);
+	}
+
+	/**
+	 * @param missing
+	 *            - the value of a property the service does not define. If
+	 *            null, a missing property is reported as an error.
+	 */
+	public ServiceModelAdaptor(Object missing) {
+		this.missing = missing;
+	}
 
 	/*
 	 * (non-Javadoc)
@@ -40,17 +81,20 @@ public class ServiceModelAdaptor implements ModelAdaptor {
 			Object property, String propertyName)
 			throws STNoSuchPropertyException {
 		Service service = (Service) o;
-		if (propertyName.equals("port")) {
-			return service.getPort();
-		}
-		if (propertyName.equals("host")) {
-			return service.getHost();
+		if (propertyName != null) {
+			Accessor accessor = ACCESSORS.get(propertyName);
+			if (accessor != null) {
+				return accessor.get(service);
+			}
+			String prop = service.getProperties().get(propertyName);
+			if (prop != null) {
+				return prop;
+			}
 		}
-		String prop = service.getProperties().get(propertyName);
-		if (prop == null) {
-			throw new STNoSuchPropertyException(null, o, propertyName);
+		if (missing != null) {
+			return missing;
 		}
-		return prop;
+		throw new STNoSuchPropertyException(null, o, propertyName);
 	}
 
 }
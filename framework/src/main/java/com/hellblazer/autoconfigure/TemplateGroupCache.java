@@ -0,0 +1,546 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroup;
+import org.stringtemplate.v4.STGroupFile;
+
+/**
+ * A process wide cache of compiled template groups. Groups are keyed by the
+ * path of the template group file, which is resolved once, when the group is
+ * compiled. A group is recompiled only when the modification time of the
+ * group file, or of one of the group files it imports, changes. Only group
+ * files on the file system are checked: class path resources, e.g. within a
+ * jar, are treated as immutable. The model adaptors used by the auto
+ * configuration process are registered once, when the group is compiled.
+ * <p>
+ * Groups verified at build time are listed in the template index, the
+ * {@link #INDEX} resources on the class path. An index entry records the
+ * digest of the group file and of the group files it imports, and the formal
+ * arguments of its configured templates. While the digest matches the loaded
+ * group files, the formal arguments and sources of the group are answered
+ * from the index, and the group is compiled only when it is rendered.
+ *
+ * @author hhildebrand
+ *
+ */
+public class TemplateGroupCache {
+    private static class CompiledGroup {
+	private final ConcurrentMap<String, Set<String>> formalArguments = new ConcurrentHashMap<>();
+	private final STGroup group;
+	private final Map<File, Long> lastModified;
+	private final List<URL> sources;
+
+	private CompiledGroup(STGroup group, List<URL> sources) {
+	    this.group = group;
+	    this.sources = Collections.unmodifiableList(sources);
+	    lastModified = lastModifiedOf(sources);
+	}
+
+	/**
+	 * @return true if a group file on the file system has been modified
+	 *         since the group was compiled
+	 */
+	private boolean isStale() {
+	    return TemplateGroupCache.isStale(lastModified);
+	}
+    }
+
+    private static class IndexedGroup {
+	private final Map<String, Set<String>> formalArguments;
+	private final Map<File, Long> lastModified;
+	private final List<URL> sources;
+
+	private IndexedGroup(Map<String, Set<String>> formalArguments,
+		List<URL> sources) {
+	    this.formalArguments = formalArguments;
+	    this.sources = Collections.unmodifiableList(sources);
+	    lastModified = lastModifiedOf(sources);
+	}
+
+	/**
+	 * @return true if a group file on the file system has been modified
+	 *         since the group was verified against the index
+	 */
+	private boolean isStale() {
+	    return TemplateGroupCache.isStale(lastModified);
+	}
+    }
+
+    /**
+     * The suffix of the index key of the formal arguments of a template, a
+     * comma separated list, prefixed by the template group and template name
+     */
+    public static final String ARGUMENTS = ".arguments";
+    /**
+     * The suffix of the index key of the digest of a template group file and
+     * of the group files it imports
+     */
+    public static final String DIGEST = ".digest";
+    /**
+     * The suffix of the index key of the group files imported by a template
+     * group, a comma separated list of paths relative to the group file
+     */
+    public static final String IMPORTS = ".imports";
+    /**
+     * The class path resource of the template index
+     */
+    public static final String INDEX = "META-INF/autoconfigure/templates.properties";
+
+    private static final TemplateGroupCache INSTANCE = new TemplateGroupCache();
+    private static final ConcurrentMap<Object, TemplateGroupCache> INSTANCES = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory
+	    .getLogger(TemplateGroupCache.class);
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * @param sources
+     *            - the URLs of a template group file and of the group files it
+     *            imports
+     * @return the digest of the content of the group files
+     * @throws IOException
+     */
+    public static String digest(List<URL> sources) throws IOException {
+	MessageDigest digest = ConfigurationWriter.newDigest();
+	byte[] buffer = new byte[BUFFER_SIZE];
+	for (URL source : sources) {
+	    try (InputStream is = new BufferedInputStream(source.openStream(),
+		    BUFFER_SIZE)) {
+		for (int read = is.read(buffer); read >= 0; read = is
+			.read(buffer)) {
+		    digest.update(buffer, 0, read);
+		}
+	    }
+	}
+	return ConfigurationWriter.toHex(digest.digest());
+    }
+
+    /**
+     * @param url
+     * @return the file of a file system URL, or null if the URL does not
+     *         refer to the file system
+     */
+    public static File fileOf(URL url) {
+	if (!"file".equals(url.getProtocol())) {
+	    return null;
+	}
+	try {
+	    return new File(url.toURI());
+	} catch (URISyntaxException | IllegalArgumentException e) {
+	    return new File(url.getFile());
+	}
+    }
+
+    /**
+     * @return the process wide template group cache
+     */
+    public static TemplateGroupCache getDefault() {
+	return INSTANCE;
+    }
+
+    /**
+     * @param missingProperty
+     *            - the value rendered for a property a service does not
+     *            define, or null if missing properties are errors
+     * @return the process wide template group cache whose groups render
+     *         missing service properties with the supplied value
+     */
+    public static TemplateGroupCache getDefault(Object missingProperty) {
+	if (missingProperty == null) {
+	    return INSTANCE;
+	}
+	TemplateGroupCache cache = INSTANCES.get(missingProperty);
+	if (cache == null) {
+	    cache = new TemplateGroupCache(missingProperty);
+	    TemplateGroupCache existing = INSTANCES.putIfAbsent(
+		    missingProperty, cache);
+	    if (existing != null) {
+		cache = existing;
+	    }
+	}
+	return cache;
+    }
+
+    /**
+     * Answer the URLs of the template group file and of the group files it
+     * imports, directly or transitively. Imported template directories are
+     * not tracked.
+     *
+     * @param url
+     *            - the URL the group was loaded from
+     * @param group
+     *            - the loaded group
+     * @return the URLs of the group files the group was loaded from
+     */
+    public static List<URL> sourcesOf(URL url, STGroup group) {
+	List<URL> sources = new ArrayList<>();
+	sources.add(url);
+	addImported(group, sources);
+	return sources;
+    }
+
+    private static void addImported(STGroup group, List<URL> sources) {
+	for (STGroup imported : group.getImportedGroups()) {
+	    if (imported instanceof STGroupFile) {
+		URL url = ((STGroupFile) imported).url;
+		if (url != null && !sources.contains(url)) {
+		    sources.add(url);
+		    addImported(imported, sources);
+		}
+	    }
+	}
+    }
+
+    private static boolean isStale(Map<File, Long> lastModified) {
+	for (Map.Entry<File, Long> entry : lastModified.entrySet()) {
+	    if (entry.getKey().lastModified() != entry.getValue()) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    private static Map<File, Long> lastModifiedOf(List<URL> sources) {
+	Map<File, Long> files = new HashMap<>();
+	for (URL source : sources) {
+	    File file = fileOf(source);
+	    if (file != null) {
+		files.put(file, file.lastModified());
+	    }
+	}
+	return files;
+    }
+
+    private final ConcurrentMap<String, CompiledGroup> groups = new ConcurrentHashMap<>();
+    private volatile Properties index;
+    private final ConcurrentMap<String, IndexedGroup> indexed = new ConcurrentHashMap<>();
+    private final Object missingProperty;
+
+    public TemplateGroupCache() {
+	this(null);
+    }
+
+    /**
+     * @param missingProperty
+     *            - the value rendered for a property a service does not
+     *            define, or null if missing properties are errors
+     */
+    public TemplateGroupCache(Object missingProperty) {
+	this.missingProperty = missingProperty;
+    }
+
+    /**
+     * Discard all the compiled template groups, and the template index
+     */
+    public void clear() {
+	groups.clear();
+	indexed.clear();
+	index = null;
+    }
+
+    /**
+     * Answer the compiled template group for the template group file. The
+     * group is compiled if it is not present in the cache, or if the file has
+     * been modified since it was compiled.
+     *
+     * @param templateGroup
+     *            - the path of the template group file, either on the file
+     *            system or as a class path resource
+     * @return the compiled template group
+     * @throws IllegalArgumentException
+     *             - if the template group file cannot be found
+     */
+    public STGroup get(String templateGroup) {
+	return compiled(templateGroup).group;
+    }
+
+    /**
+     * Answer the names of the formal arguments declared by the template. The
+     * arguments are answered from the template index if the group is indexed
+     * and has not changed since it was indexed, otherwise the arguments of
+     * each template are determined once per compiled group.
+     *
+     * @param templateGroup
+     *            - the path of the template group file
+     * @param template
+     *            - the name of the template within the group
+     * @return the formal argument names of the template, or null if the
+     *         template is not defined by the group
+     */
+    public Set<String> getFormalArguments(String templateGroup, String template) {
+	CompiledGroup compiled = groups.get(templateGroup);
+	if (compiled == null || compiled.isStale()) {
+	    IndexedGroup group = indexed(templateGroup);
+	    if (group != null && group.formalArguments.containsKey(template)) {
+		return group.formalArguments.get(template);
+	    }
+	}
+	compiled = compiled(templateGroup);
+	Set<String> arguments = compiled.formalArguments.get(template);
+	if (arguments != null) {
+	    return arguments;
+	}
+	ST st = compiled.group.getInstanceOf(template);
+	if (st == null) {
+	    return null;
+	}
+	if (st.impl.formalArguments == null) {
+	    arguments = Collections.emptySet();
+	} else {
+	    arguments = Collections.unmodifiableSet(new HashSet<>(
+		    st.impl.formalArguments.keySet()));
+	}
+	compiled.formalArguments.putIfAbsent(template, arguments);
+	return arguments;
+    }
+
+    /**
+     * Answer the URLs of the template group file and of the group files it
+     * imports, directly or transitively
+     *
+     * @param templateGroup
+     *            - the path of the template group file
+     * @return the URLs of the group files the compiled group was loaded from
+     */
+    public List<URL> getSources(String templateGroup) {
+	CompiledGroup compiled = groups.get(templateGroup);
+	if (compiled == null || compiled.isStale()) {
+	    IndexedGroup group = indexed(templateGroup);
+	    if (group != null) {
+		return group.sources;
+	    }
+	}
+	return compiled(templateGroup).sources;
+    }
+
+    /**
+     * Compile the template group, if required, logging rather than failing if
+     * the group cannot be compiled. Any failure will be reported when the
+     * group is retrieved for rendering. A group verified against the template
+     * index has already been compiled at build time, and is compiled only
+     * when it is rendered.
+     *
+     * @param templateGroup
+     *            - the path of the template group file
+     */
+    public void prefill(String templateGroup) {
+	try {
+	    if (indexed(templateGroup) != null) {
+		return;
+	    }
+	    get(templateGroup);
+	} catch (Throwable e) {
+	    logger.warn(String.format("Unable to precompile template group [%s]",
+		    templateGroup), e);
+	}
+    }
+
+    /**
+     * Compile the template group, registering the model adaptors used by the
+     * auto configuration process
+     *
+     * @param url
+     * @return the compiled template group
+     */
+    protected STGroup compile(URL url) {
+	STGroupFile group = new STGroupFile(url, "UTF-8", '<', '>');
+	group.registerModelAdaptor(Service.class, new ServiceModelAdaptor(
+		missingProperty));
+	group.registerModelAdaptor(Cluster.class, new ClusterModelAdaptor());
+	group.registerModelAdaptor(InetSocketAddress.class,
+		new InetSocketAddressAdaptor());
+	group.load();
+	for (STGroup imported : group.getImportedGroups()) {
+	    imported.load();
+	}
+	return group;
+    }
+
+    /**
+     * Load the template index, merging every index resource visible to the
+     * context class loader and to the class loader of the framework
+     *
+     * @return the template index
+     */
+    protected Properties loadIndex() {
+	Properties index = new Properties();
+	Set<ClassLoader> loaders = new HashSet<>(Arrays.asList(Thread
+		.currentThread().getContextClassLoader(),
+		TemplateGroupCache.class.getClassLoader()));
+	loaders.remove(null);
+	Set<URL> loaded = new HashSet<>();
+	for (ClassLoader loader : loaders) {
+	    try {
+		Enumeration<URL> resources = loader.getResources(INDEX);
+		while (resources.hasMoreElements()) {
+		    URL resource = resources.nextElement();
+		    if (!loaded.add(resource)) {
+			continue;
+		    }
+		    try (InputStream is = resource.openStream()) {
+			index.load(is);
+		    }
+		}
+	    } catch (IOException e) {
+		logger.warn("Unable to load the template index", e);
+	    }
+	}
+	return index;
+    }
+
+    /**
+     * @param templateGroup
+     * @return the URL of the template group file, resolved from the file
+     *         system or from the class path
+     */
+    protected URL locate(String templateGroup) {
+	File file = new File(templateGroup);
+	if (file.exists()) {
+	    try {
+		return file.toURI().toURL();
+	    } catch (MalformedURLException e) {
+		throw new IllegalArgumentException(String.format(
+			"Invalid template group file [%s]", templateGroup), e);
+	    }
+	}
+	URL url = AutoConfigureService.getURL(templateGroup);
+	if (url == null) {
+	    throw new IllegalArgumentException(String.format(
+		    "No such template group file [%s]", templateGroup));
+	}
+	return url;
+    }
+
+    private CompiledGroup compiled(String templateGroup) {
+	CompiledGroup compiled = groups.get(templateGroup);
+	if (compiled != null && !compiled.isStale()) {
+	    return compiled;
+	}
+	synchronized (this) {
+	    compiled = groups.get(templateGroup);
+	    if (compiled != null && !compiled.isStale()) {
+		return compiled;
+	    }
+	    URL url = locate(templateGroup);
+	    STGroup group = compile(url);
+	    compiled = new CompiledGroup(group, sourcesOf(url, group));
+	    groups.put(templateGroup, compiled);
+	    if (logger.isDebugEnabled()) {
+		logger.debug(String.format(
+			"Compiled template group [%s] from %s", templateGroup,
+			url));
+	    }
+	    return compiled;
+	}
+    }
+
+    private Properties getIndex() {
+	Properties current = index;
+	if (current == null) {
+	    current = loadIndex();
+	    index = current;
+	}
+	return current;
+    }
+
+    /**
+     * @return the indexed group, or null if the group is not indexed or the
+     *         group files differ from the indexed digest
+     */
+    private IndexedGroup indexed(String templateGroup) {
+	IndexedGroup group = indexed.get(templateGroup);
+	if (group != null && !group.isStale()) {
+	    return group;
+	}
+	indexed.remove(templateGroup);
+	Properties index = getIndex();
+	String expected = index.getProperty(templateGroup + DIGEST);
+	if (expected == null) {
+	    return null;
+	}
+	URL url = locate(templateGroup);
+	List<URL> sources = new ArrayList<>();
+	sources.add(url);
+	try {
+	    for (String imported : index.getProperty(templateGroup + IMPORTS,
+		    "").split(",")) {
+		if (!imported.isEmpty()) {
+		    sources.add(new URL(url, imported));
+		}
+	    }
+	    if (!expected.equals(digest(sources))) {
+		logger.info(String.format(
+			"Template group [%s] has changed since it was indexed",
+			templateGroup));
+		return null;
+	    }
+	} catch (IOException e) {
+	    logger.warn(String.format(
+		    "Unable to verify template group [%s] against the index",
+		    templateGroup), e);
+	    return null;
+	}
+	String prefix = templateGroup + ".";
+	Map<String, Set<String>> formalArguments = new HashMap<>();
+	for (String key : index.stringPropertyNames()) {
+	    if (key.startsWith(prefix) && key.endsWith(ARGUMENTS)
+		    && key.length() > prefix.length() + ARGUMENTS.length()) {
+		Set<String> arguments = new HashSet<>();
+		for (String argument : index.getProperty(key).split(",")) {
+		    if (!argument.isEmpty()) {
+			arguments.add(argument);
+		    }
+		}
+		formalArguments.put(
+			key.substring(prefix.length(), key.length()
+				- ARGUMENTS.length()),
+			Collections.unmodifiableSet(arguments));
+	    }
+	}
+	group = new IndexedGroup(formalArguments, sources);
+	indexed.put(templateGroup, group);
+	if (logger.isDebugEnabled()) {
+	    logger.debug(String.format(
+		    "Verified template group [%s] against the index",
+		    templateGroup));
+	}
+	return group;
+    }
+}
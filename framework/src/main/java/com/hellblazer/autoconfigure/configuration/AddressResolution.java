@@ -0,0 +1,43 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.configuration;
+
+/**
+ * How the host name of the address this service is bound to is determined.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public enum AddressResolution {
+	/**
+	 * Reverse resolve the address of the network interface, then forward
+	 * resolve the canonical host name. Both lookups block on the resolver.
+	 * This is the default.
+	 */
+	CANONICAL,
+	/**
+	 * Reverse resolve the address of the network interface, waiting no longer
+	 * than the resolution timeout. Resolved names are cached for the life of
+	 * the process, and the literal address is used if the name cannot be
+	 * resolved in time, so the host of the service URL depends on the
+	 * latency of the resolver.
+	 */
+	CACHED_NAME,
+	/**
+	 * Use the literal address of the network interface, without consulting
+	 * the resolver
+	 */
+	LITERAL;
+}
@@ -20,6 +20,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.hellblazer.autoconfigure.AutoConfigure;
 import com.hellblazer.gossip.configuration.GossipConfiguration;
 
@@ -31,10 +32,24 @@ public class Configuration {
     public static String           RESTART_STATE_FILE = ".autoconfigure.restart.state";
 
     public List<String>            additionalPorts    = new ArrayList<>();
+    public AddressResolution       addressResolution  = AddressResolution.CANONICAL;
+    public ExecutionMode           executionMode      = ExecutionMode.INLINE;
     public GossipConfiguration     gossip             = new GossipConfiguration();
+    public boolean                 groupCommit        = false;
+    public boolean                 hotReload          = false;
     public boolean                 ipV6               = false;
     public JmxConfiguration        jmx                = new JmxConfiguration();
+    public int                     lifecyclePoolSize  = 4;
+    public long                    membershipValidation = 30000;
+    public String                  missingProperty;
+    public boolean                 multiplexListeners = false;
     public String                  networkInterface;
+    public boolean                 parallelRendering  = false;
+    public String                  portRange;
+    public List<String>            preferredNetworks  = new ArrayList<>();
+    public boolean                 reconfigure        = false;
+    public int                     renderParallelism  = Runtime.getRuntime().availableProcessors();
+    public long                    resolutionTimeout  = 5000;
     public List<ServiceCollection> serviceCollections = new ArrayList<>();
     public Map<String, String>     serviceProperties  = new HashMap<>();
     public List<SingletonService>  services           = new ArrayList<>();
@@ -44,6 +59,8 @@ public class Configuration {
     public String                  totalOrderingVariable;
     public List<UniqueDirectory>   uniqueDirectories  = new ArrayList<>();
     public Map<String, String>     variables          = new HashMap<>();
+    @JsonIgnore
+    public Map<String, VariableSupplier<?>> variableSuppliers = new HashMap<>();
     public boolean                 verboseTemplating  = false;
     public String                  restartStateFile   = RESTART_STATE_FILE;
 
@@ -0,0 +1,176 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.configuration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.hellblazer.autoconfigure.ConfigurationWriter;
+
+/**
+ * A compiled binary snapshot of a configuration YAML file, written next to the
+ * YAML file. The snapshot holds the parsed YAML as a Smile encoded tree,
+ * prefixed by the digest of the YAML it was parsed from, so that the YAML
+ * parsing is skipped when the YAML file has not changed. The configuration is
+ * bound from the tree exactly as it is from the YAML.
+ *
+ * @author hhildebrand
+ *
+ */
+public class ConfigurationSnapshot {
+	/**
+	 * The suffix appended to the YAML file name to name its snapshot
+	 */
+	public static final String SUFFIX = ".snapshot";
+
+	private static final Logger logger = LoggerFactory
+			.getLogger(ConfigurationSnapshot.class);
+	private static final ObjectMapper SMILE = new ObjectMapper(
+			new SmileFactory());
+
+	/**
+	 * Load the configuration from the YAML file, using its snapshot if the
+	 * snapshot was compiled from the current content of the file. Otherwise,
+	 * the YAML is parsed and the snapshot is rewritten.
+	 *
+	 * @param yaml
+	 *            - the configuration YAML file
+	 * @return the configuration
+	 * @throws IOException
+	 */
+	public static Configuration load(File yaml) throws IOException {
+		byte[] content = Files.readAllBytes(yaml.toPath());
+		String digest = digest(content);
+		File snapshot = snapshotOf(yaml);
+		if (snapshot.isFile()) {
+			try {
+				JsonNode tree = read(snapshot, digest);
+				if (tree != null) {
+					return YamlHelper.fromTree(tree);
+				}
+				logger.info(String.format(
+						"Configuration snapshot [%s] is stale", snapshot));
+			} catch (IOException e) {
+				logger.warn(String.format(
+						"Unable to read configuration snapshot [%s]", snapshot),
+						e);
+			}
+		}
+		JsonNode tree = YamlHelper.readTree(new ByteArrayInputStream(content));
+		try {
+			write(snapshot, digest, tree);
+		} catch (IOException e) {
+			logger.warn(String.format(
+					"Unable to write configuration snapshot [%s]", snapshot), e);
+		}
+		return YamlHelper.fromTree(tree);
+	}
+
+	/**
+	 * @param snapshot
+	 *            - the snapshot file
+	 * @param digest
+	 *            - the digest of the current content of the YAML file
+	 * @return the parsed YAML held by the snapshot, or null if the snapshot was
+	 *         compiled from different content
+	 * @throws IOException
+	 */
+	public static JsonNode read(File snapshot, String digest)
+			throws IOException {
+		try (DataInputStream is = new DataInputStream(new FileInputStream(
+				snapshot))) {
+			return read(is, digest);
+		}
+	}
+
+	/**
+	 * @param snapshot
+	 *            - the content of the snapshot
+	 * @param digest
+	 *            - the digest of the current content of the YAML file
+	 * @return the parsed YAML held by the snapshot, or null if the snapshot was
+	 *         compiled from different content
+	 * @throws IOException
+	 */
+	public static JsonNode read(InputStream snapshot, String digest)
+			throws IOException {
+		DataInputStream is = new DataInputStream(snapshot);
+		if (!digest.equals(is.readUTF())) {
+			return null;
+		}
+		return SMILE.readTree(is);
+	}
+
+	/**
+	 * @param yaml
+	 * @return the snapshot file of the YAML file
+	 */
+	public static File snapshotOf(File yaml) {
+		return new File(yaml.getAbsoluteFile().getParentFile(), yaml.getName()
+				+ SUFFIX);
+	}
+
+	/**
+	 * @param content
+	 * @return the digest identifying the content of a YAML file
+	 */
+	public static String digest(byte[] content) {
+		return ConfigurationWriter.toHex(ConfigurationWriter.newDigest()
+				.digest(content));
+	}
+
+	/**
+	 * Write the snapshot of the parsed YAML. The snapshot is written to a
+	 * temporary file and moved into place, atomically where the file system
+	 * supports it, so that concurrent readers never see a partial snapshot.
+	 *
+	 * @param snapshot
+	 *            - the snapshot file
+	 * @param digest
+	 *            - the digest of the YAML the tree was parsed from
+	 * @param tree
+	 *            - the parsed YAML
+	 * @throws IOException
+	 */
+	public static void write(File snapshot, String digest, JsonNode tree)
+			throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try (DataOutputStream os = new DataOutputStream(buffer)) {
+			os.writeUTF(digest);
+			SMILE.writeValue(os, tree);
+		}
+		File temp = File.createTempFile(snapshot.getName(), ".tmp",
+				snapshot.getAbsoluteFile().getParentFile());
+		try {
+			Files.write(temp.toPath(), buffer.toByteArray());
+			ConfigurationWriter.move(temp.toPath(), snapshot.toPath());
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+}
@@ -0,0 +1,40 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.configuration;
+
+/**
+ * How the lifecycle actions of the auto configuration process - the success
+ * and failure actions, the restart startup and the dispatch of discovery
+ * events - are executed.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public enum ExecutionMode {
+	/**
+	 * Run the actions on the thread that triggers them, e.g. the discovery
+	 * thread completing the rendezvous
+	 */
+	INLINE,
+	/**
+	 * Run the actions on a bounded pool of daemon threads
+	 */
+	POOLED,
+	/**
+	 * Run each action on a new virtual thread, falling back to a bounded pool
+	 * on JVMs without virtual threads
+	 */
+	VIRTUAL;
+}
@@ -15,13 +15,81 @@
 
 package com.hellblazer.autoconfigure.configuration;
 
+import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import com.hellblazer.autoconfigure.Service;
+import com.hellblazer.slp.ServiceScope;
+import com.hellblazer.slp.ServiceURL;
+
 /**
  * @author hhildebrand
  * 
  */
 public class RestartState {
-    public String              serviceURL;
-    public Map<String, String> serviceProperties;
+    /**
+     * The state of a discovered service, used to regenerate configurations
+     * and to restore the discovered membership upon restart
+     */
+    public static class ServiceState {
+        /**
+         * @param service
+         * @return the state of the service
+         */
+        public static ServiceState from(Service service) {
+            ServiceState state = new ServiceState();
+            state.serviceURL = service.getServiceUrl().getServiceURL();
+            state.properties = new HashMap<>(service.getProperties());
+            state.registration = state.properties.get(ServiceScope.SERVICE_REGISTRATION);
+            return state;
+        }
+
+        public Map<String, String> properties;
+        public String              registration;
+        public String              serviceURL;
+
+        /**
+         * @return the service model reconstructed from the state
+         * @throws IllegalStateException
+         *             - if the service URL is invalid
+         */
+        public Service toService() {
+            Map<String, String> serviceProperties = new HashMap<>();
+            if (properties != null) {
+                serviceProperties.putAll(properties);
+            }
+            if (registration != null) {
+                serviceProperties.put(ServiceScope.SERVICE_REGISTRATION,
+                                      registration);
+            }
+            try {
+                return new Service(new ServiceURL(serviceURL),
+                                   serviceProperties);
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(
+                                                String.format("Unable to reconstruct service URL: %s",
+                                                              serviceURL), e);
+            }
+        }
+    }
+
+    public Map<String, List<ServiceState>> clusters;
+    /**
+     * The discovered members of each service collection, keyed by the filter
+     * of the collection
+     */
+    public Map<String, List<ServiceState>> collectionMembers;
+    public Map<String, String>             generatedDigests;
+    public String                          hostAddress;
+    public Map<String, String>             serviceProperties;
+    public Map<String, ServiceState>       services;
+    /**
+     * The discovered singleton services, keyed by the filter of the singleton
+     */
+    public Map<String, ServiceState>       singletonMembers;
+    public String                          serviceURL;
+    public Map<String, String>             templateDigests;
+    public Map<String, String>             variables;
 }
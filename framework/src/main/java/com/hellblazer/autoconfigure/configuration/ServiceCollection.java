@@ -19,12 +19,15 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.hellblazer.autoconfigure.AutoConfigure;
 import com.hellblazer.autoconfigure.Cluster;
 import com.hellblazer.autoconfigure.Service;
+import com.hellblazer.autoconfigure.ServiceFilter;
 import com.hellblazer.slp.ServiceReference;
 import com.hellblazer.slp.ServiceScope;
 
@@ -37,16 +40,48 @@ import com.hellblazer.slp.ServiceScope;
 public class ServiceCollection {
     public int cardinality = 0;
     public String idProperty = "totalOrderingIndex";
+    /**
+     * The quorum of services required before configuration may proceed. If 0,
+     * all the services must be discovered.
+     */
+    public int minCardinality = 0;
     public Map<String, String> properties = new HashMap<>();
+    /**
+     * The number of milliseconds to wait for the remaining services once the
+     * quorum has been discovered
+     */
+    public long quorumWindow = 0;
     public String service;
     public String variable;
     private final List<Service> discovered = new CopyOnWriteArrayList<>();
+    private final AtomicInteger distinct = new AtomicInteger();
+    private volatile ServiceFilter filter;
+    private final List<Service> pending = new CopyOnWriteArrayList<>();
+    private volatile boolean sealed;
+    private final Set<String> registrations = Collections
+	    .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> unconfirmed = Collections
+	    .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     /**
      * @return the query filter for the service collection
      */
     public String constructFilter() {
-	return AutoConfigure.constructFilter(service, properties);
+	return getFilter().toString();
+    }
+
+    /**
+     * @return the query filter for the service collection, built once from
+     *         the service type and properties of the definition
+     */
+    public ServiceFilter getFilter() {
+	ServiceFilter current = filter;
+	if (current == null) {
+	    current = ServiceFilter.builder(service).properties(properties)
+		    .build();
+	    filter = current;
+	}
+	return current;
     }
 
     /**
@@ -56,9 +91,162 @@ public class ServiceCollection {
 	return new Cluster<>(canonicalizeServices());
     }
 
-    public synchronized void discover(ServiceReference reference) {
-	discovered.add(new Service(reference.getUrl(), reference
-		.getProperties()));
+    /**
+     * @param reference
+     * @return true if the service registered by the reference has been
+     *         discovered by this collection
+     */
+    public boolean contains(ServiceReference reference) {
+	String registration = registrationOf(reference);
+	return registration != null && registrations.contains(registration);
+    }
+
+    /**
+     * Confirm a restored member of the collection, replacing the restored
+     * member with its current state
+     * 
+     * @param reference
+     * @return true if the reference confirms a restored member
+     */
+    public synchronized boolean confirm(ServiceReference reference) {
+	String registration = registrationOf(reference);
+	if (registration == null || !unconfirmed.remove(registration)) {
+	    return false;
+	}
+	int index = indexOf(registration);
+	if (index >= 0) {
+	    discovered.set(index, current(reference, discovered.get(index)));
+	}
+	return true;
+    }
+
+    /**
+     * Remove the restored members that have not been confirmed by discovery
+     * 
+     * @return the members removed from the collection
+     */
+    public synchronized List<Service> expireUnconfirmed() {
+	List<Service> expired = new ArrayList<>();
+	for (String registration : unconfirmed) {
+	    int index = indexOf(registration);
+	    if (index >= 0) {
+		expired.add(discovered.remove(index));
+		registrations.remove(registration);
+		distinct.decrementAndGet();
+	    }
+	}
+	unconfirmed.clear();
+	return expired;
+    }
+
+    /**
+     * @return the current members of the collection, in the order of their
+     *         discovery
+     */
+    public List<Service> getMembers() {
+	return Collections.unmodifiableList(discovered);
+    }
+
+    /**
+     * @return true if every restored member of the collection has been
+     *         confirmed by discovery
+     */
+    public boolean isConfirmed() {
+	return unconfirmed.isEmpty();
+    }
+
+    /**
+     * Restore the members of the collection from a previous configuration.
+     * The restored members are the initial membership of the collection, and
+     * remain unconfirmed until they are discovered.
+     * 
+     * @param members
+     */
+    public synchronized void restore(List<Service> members) {
+	for (Service member : members) {
+	    String registration = member.getProperties().get(
+		    ServiceScope.SERVICE_REGISTRATION);
+	    if (registration == null || !registrations.add(registration)) {
+		continue;
+	    }
+	    unconfirmed.add(registration);
+	    discovered.add(member);
+	    distinct.incrementAndGet();
+	}
+    }
+
+    /**
+     * Discover a member of the collection. Redeliveries of a registration
+     * that has already been discovered are ignored.
+     * 
+     * @param reference
+     * @return true if the reference is a new member that counts towards the
+     *         cardinality of the collection
+     */
+    public boolean discover(ServiceReference reference) {
+	String registration = registrationOf(reference);
+	if (registration != null && !registrations.add(registration)) {
+	    return false;
+	}
+	Service member = new Service(reference.getUrl(),
+		reference.getProperties());
+	if (sealed) {
+	    pending.add(member);
+	    return false;
+	}
+	discovered.add(member);
+	return distinct.incrementAndGet() <= getQuorum();
+    }
+
+    /**
+     * Remove the service registered by the reference from the collection
+     * 
+     * @param reference
+     * @return true if the service was a member of the collection
+     */
+    public synchronized boolean remove(ServiceReference reference) {
+	int index = indexOf(registrationOf(reference));
+	if (index < 0) {
+	    return false;
+	}
+	discovered.remove(index);
+	registrations.remove(registrationOf(reference));
+	distinct.decrementAndGet();
+	return true;
+    }
+
+    /**
+     * Replace the service registered by the reference with its current state
+     * 
+     * @param reference
+     * @return true if the service was a member of the collection
+     */
+    public synchronized boolean update(ServiceReference reference) {
+	int index = indexOf(registrationOf(reference));
+	if (index < 0) {
+	    return false;
+	}
+	discovered.set(index, current(reference, discovered.get(index)));
+	return true;
+    }
+
+    /**
+     * @return the services that have joined the collection after its
+     *         membership was sealed
+     */
+    public List<Service> getPending() {
+	return Collections.unmodifiableList(pending);
+    }
+
+    /**
+     * @return the number of services that must be discovered before
+     *         configuration may proceed
+     */
+    public int getQuorum() {
+	if (minCardinality <= 0) {
+	    return cardinality;
+	}
+	return Math.min(minCardinality, cardinality);
     }
 
     /**
@@ -90,8 +278,23 @@ public class ServiceCollection {
     /**
      * @return true if all the services have been discovered
      */
+    public boolean isComplete() {
+	return distinct.get() >= cardinality;
+    }
+
+    /**
+     * @return true if the quorum of services has been discovered
+     */
     public boolean isSatisfied() {
-	return discovered.size() == cardinality;
+	return distinct.get() >= getQuorum();
+    }
+
+    /**
+     * Seal the membership of the collection. Services discovered after the
+     * collection is sealed are not members, and are held as pending.
+     */
+    public void seal() {
+	sealed = true;
     }
 
     @Override
@@ -103,17 +306,59 @@ public class ServiceCollection {
     /**
      * Canonicalize the services, providing a total ordering of the services.
      * Add the unique index of each service to its properties, using the
-     * supplied idProperty as the property key
+     * supplied idProperty as the property key. The ordering is computed on a
+     * snapshot of the discovered services, which are left untouched, so that
+     * services discovered concurrently are never lost.
+     * <p>
+     * The index of a service is its position, from 1, in the sorted
+     * membership, so every node observing the same membership assigns the
+     * same indexes, regardless of the order in which the services were
+     * discovered.
      */
-    protected List<Service> canonicalizeServices() {
+    protected synchronized List<Service> canonicalizeServices() {
 	List<Service> canonicalized = new ArrayList<>(discovered);
 	Collections.sort(canonicalized);
 	for (int i = 1; i <= canonicalized.size(); i++) {
 	    canonicalized.get(i - 1).getProperties()
 		    .put(idProperty, String.valueOf(i));
 	}
-	discovered.clear();
-	discovered.addAll(canonicalized);
 	return canonicalized;
     }
+
+    /**
+     * Answer the current state of a member, retaining the total ordering
+     * index assigned to the member, until the collection is canonicalized
+     * again, if the service has not published one
+     */
+    private Service current(ServiceReference reference, Service member) {
+	Map<String, String> properties = new HashMap<>(
+		reference.getProperties());
+	String id = member.getProperties().get(idProperty);
+	if (id != null && !properties.containsKey(idProperty)) {
+	    properties.put(idProperty, id);
+	}
+	return new Service(reference.getUrl(), properties);
+    }
+
+    private int indexOf(String registration) {
+	if (registration == null || !registrations.contains(registration)) {
+	    return -1;
+	}
+	for (int i = 0; i < discovered.size(); i++) {
+	    if (registration.equals(discovered.get(i).getProperties()
+		    .get(ServiceScope.SERVICE_REGISTRATION))) {
+		return i;
+	    }
+	}
+	return -1;
+    }
+
+    private String registrationOf(ServiceReference reference) {
+	String registration = reference.getProperties().get(
+		ServiceScope.SERVICE_REGISTRATION);
+	if (registration == null && reference.getRegistration() != null) {
+	    registration = reference.getRegistration().toString();
+	}
+	return registration;
+    }
 }
@@ -16,9 +16,10 @@ package com.hellblazer.autoconfigure.configuration;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
-import com.hellblazer.autoconfigure.AutoConfigure;
 import com.hellblazer.autoconfigure.Service;
+import com.hellblazer.autoconfigure.ServiceFilter;
 import com.hellblazer.slp.ServiceReference;
 
 /**
@@ -28,28 +29,145 @@ import com.hellblazer.slp.ServiceReference;
  * 
  */
 public class SingletonService {
+	private static final AtomicReferenceFieldUpdater<SingletonService, ServiceReference> DISCOVERED = AtomicReferenceFieldUpdater
+			.newUpdater(SingletonService.class, ServiceReference.class,
+					"discovered");
+
 	public Map<String, String> properties = new HashMap<>();
 
 	public String service;
 	public String variable;
 	private volatile ServiceReference discovered;
+	private volatile ServiceFilter filter;
+	private volatile Service restored;
+	private volatile boolean withdrawn;
 
 	/**
 	 * @return the query filter for the service collection
 	 */
 	public String constructFilter() {
-		return AutoConfigure.constructFilter(service, properties);
+		return getFilter().toString();
+	}
+
+	/**
+	 * @return the query filter for the service, built once from the service
+	 *         type and properties of the definition
+	 */
+	public ServiceFilter getFilter() {
+		ServiceFilter current = filter;
+		if (current == null) {
+			current = ServiceFilter.builder(service).properties(properties)
+					.build();
+			filter = current;
+		}
+		return current;
 	}
 
 	/**
-	 * @return the service model discovered for this singleton
+	 * @return the service model discovered for this singleton, or the
+	 *         restored service if the singleton has not yet been discovered
 	 */
 	public Service constructService() {
-		return new Service(discovered.getUrl(), discovered.getProperties());
+		ServiceReference current = discovered;
+		if (current == null) {
+			return restored;
+		}
+		return new Service(current.getUrl(), current.getProperties());
+	}
+
+	/**
+	 * @return true if the singleton has been discovered, or has not been
+	 *         restored from a previous configuration
+	 */
+	public boolean isConfirmed() {
+		return discovered != null || restored == null;
+	}
+
+	/**
+	 * Confirm the restored singleton with its first discovery
+	 * 
+	 * @param reference
+	 * @return true if the reference is the first discovery of a restored
+	 *         singleton
+	 */
+	public boolean confirm(ServiceReference reference) {
+		return restored != null && acquire(reference);
+	}
+
+	/**
+	 * @return the service restored from a previous configuration, or null
+	 */
+	public Service getRestored() {
+		return restored;
+	}
+
+	/**
+	 * Restore the singleton from a previous configuration. The restored
+	 * service is used until the singleton is discovered.
+	 * 
+	 * @param service
+	 */
+	public void restore(Service service) {
+		restored = service;
+	}
+
+	/**
+	 * Discover the singleton, if it has not already been discovered
+	 * 
+	 * @param reference
+	 * @return true if the reference is the first discovery of the singleton
+	 */
+	public boolean acquire(ServiceReference reference) {
+		return DISCOVERED.compareAndSet(this, null, reference);
 	}
 
 	public void discover(ServiceReference discovered) {
 		this.discovered = discovered;
+		withdrawn = false;
+	}
+
+	/**
+	 * Replace the discovered service with a new registration, if the
+	 * discovered service has been withdrawn
+	 * 
+	 * @param replacement
+	 * @return true if the discovered service was replaced
+	 */
+	public synchronized boolean replace(ServiceReference replacement) {
+		if (!withdrawn) {
+			return false;
+		}
+		discover(replacement);
+		return true;
+	}
+
+	/**
+	 * Update the state of the discovered service
+	 * 
+	 * @param reference
+	 * @return true if the reference is the discovered service
+	 */
+	public synchronized boolean update(ServiceReference reference) {
+		if (!isDiscovered(reference)) {
+			return false;
+		}
+		discovered = reference;
+		return true;
+	}
+
+	/**
+	 * Note that the discovered service has been unregistered. The service
+	 * remains the discovered service until it is replaced.
+	 * 
+	 * @param reference
+	 * @return true if the reference is the discovered service
+	 */
+	public synchronized boolean withdraw(ServiceReference reference) {
+		if (!isDiscovered(reference)) {
+			return false;
+		}
+		withdrawn = true;
+		return true;
 	}
 
 	public ServiceReference getDiscovered() {
@@ -63,6 +181,12 @@ public class SingletonService {
 		return discovered != null;
 	}
 
+	private boolean isDiscovered(ServiceReference reference) {
+		ServiceReference current = discovered;
+		return current != null && current.getRegistration() != null
+				&& current.getRegistration().equals(reference.getRegistration());
+	}
+
 	@Override
 	public String toString() {
 		return String.format("Service [%s] properties %s", service, properties);
@@ -0,0 +1,32 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.configuration;
+
+/**
+ * Supplies the value of a substitution variable. The supplier is only invoked
+ * if a template declares the variable, and is invoked at most once each time
+ * the configurations are generated.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public interface VariableSupplier<T> {
+	/**
+	 * @return the value of the variable
+	 * @throws Exception
+	 *             - if the value cannot be determined
+	 */
+	T supply() throws Exception;
+}
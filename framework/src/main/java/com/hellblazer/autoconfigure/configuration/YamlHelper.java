@@ -18,32 +18,123 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 
 /**
+ * Shared, preconfigured readers of the auto configuration YAML, and of the
+ * JSON state files. Object readers and writers are immutable and thread safe,
+ * so the mappers are configured once and the readers are cached by type.
+ * 
  * @author hhildebrand
  * 
  */
 public class YamlHelper {
+	private static final ObjectMapper JSON = new ObjectMapper();
+	private static final ConcurrentMap<Class<?>, ObjectReader> JSON_READERS = new ConcurrentHashMap<>();
+	private static final ObjectWriter JSON_WRITER = JSON.writer();
+	private static final ObjectMapper YAML = new ObjectMapper(
+			new YAMLFactory()).registerModule(getModule());
+	private static final ConcurrentMap<Class<?>, ObjectReader> YAML_READERS = new ConcurrentHashMap<>();
 
 	public static Configuration fromYaml(File yaml) throws JsonParseException,
 			JsonMappingException, IOException {
-		return fromYaml(new FileInputStream(yaml));
+		try (InputStream is = new FileInputStream(yaml)) {
+			return fromYaml(is);
+		}
+	}
+
+	/**
+	 * @param yaml
+	 *            - the configuration YAML file
+	 * @param snapshot
+	 *            - if true, use the binary snapshot of the configuration
+	 *            written next to the YAML file, when its digest matches
+	 * @return the configuration
+	 * @throws IOException
+	 */
+	public static Configuration fromYaml(File yaml, boolean snapshot)
+			throws JsonParseException, JsonMappingException, IOException {
+		if (snapshot) {
+			return ConfigurationSnapshot.load(yaml);
+		}
+		return fromYaml(yaml);
 	}
 
 	public static Configuration fromYaml(InputStream yaml)
 			throws JsonParseException, JsonMappingException, IOException {
-		ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
-		mapper.registerModule(getModule());
-		return mapper.readValue(yaml, Configuration.class);
+		return reader(Configuration.class).readValue(yaml);
+	}
+
+	/**
+	 * @param tree
+	 *            - the parsed configuration YAML
+	 * @return the configuration bound from the tree
+	 * @throws IOException
+	 */
+	public static Configuration fromTree(JsonNode tree)
+			throws JsonProcessingException, IOException {
+		return reader(Configuration.class).readValue(tree);
 	}
 
 	public static Module getModule() {
 		return com.hellblazer.gossip.configuration.YamlHelper.getModule();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @param type
+	 * @return the shared JSON reader of the type
+	 */
+	public static ObjectReader jsonReader(Class<?> type) {
+		return cached(JSON_READERS, JSON, type);
+	}
+
+	/**
+	 * @return the shared JSON writer
+	 */
+	public static ObjectWriter jsonWriter() {
+		return JSON_WRITER;
+	}
+
+	/**
+	 * @param type
+	 * @return the shared YAML reader of the type, with the gossip module
+	 *         registered
+	 */
+	public static ObjectReader reader(Class<?> type) {
+		return cached(YAML_READERS, YAML, type);
+	}
+
+	/**
+	 * @param yaml
+	 * @return the YAML parsed as a tree
+	 * @throws IOException
+	 */
+	public static JsonNode readTree(InputStream yaml) throws IOException {
+		return YAML.readTree(yaml);
+	}
+
+	private static ObjectReader cached(
+			ConcurrentMap<Class<?>, ObjectReader> readers, ObjectMapper mapper,
+			Class<?> type) {
+		ObjectReader reader = readers.get(type);
+		if (reader == null) {
+			reader = mapper.reader(type);
+			ObjectReader existing = readers.putIfAbsent(type, reader);
+			if (existing != null) {
+				reader = existing;
+			}
+		}
+		return reader;
+	}
+}
@@ -0,0 +1,60 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.jmx;
+
+import java.util.Map;
+
+/**
+ * The management interface of the auto configuration process, exposing the
+ * current phase, the progress of service discovery and the time spent in
+ * each phase.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public interface AutoConfigureMXBean {
+    /**
+     * @return the number of services discovered for each required singleton
+     *         and service collection
+     */
+    Map<String, Integer> getDiscoveredServices();
+
+    /**
+     * @return the number of services expected for each required singleton and
+     *         service collection
+     */
+    Map<String, Integer> getExpectedServices();
+
+    /**
+     * @return the milliseconds remaining before the discovery rendezvous is
+     *         cancelled, or -1 if no rendezvous is pending
+     */
+    long getMillisBeforeCancellation();
+
+    /**
+     * @return the current phase of the auto configuration process
+     */
+    String getPhase();
+
+    /**
+     * @return the milliseconds spent in each phase that has been entered
+     */
+    Map<String, Long> getPhaseDurations();
+
+    /**
+     * @return the number of services the rendezvous is still waiting for
+     */
+    int getRemainingServices();
+}
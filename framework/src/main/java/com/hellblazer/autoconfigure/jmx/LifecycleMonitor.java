@@ -0,0 +1,239 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hellblazer.autoconfigure.DiscoveryRendezvous;
+import com.hellblazer.autoconfigure.configuration.ServiceCollection;
+import com.hellblazer.autoconfigure.configuration.SingletonService;
+
+/**
+ * Tracks the phases of the auto configuration process, and exposes them and
+ * the progress of service discovery as an {@link AutoConfigureMXBean} on the
+ * platform MBean server.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public class LifecycleMonitor implements AutoConfigureMXBean {
+    public static final String DOMAIN = "com.hellblazer.autoconfigure";
+
+    private static final Logger log = LoggerFactory
+	    .getLogger(LifecycleMonitor.class);
+
+    /**
+     * @param service
+     *            - the service URL format of the configured service
+     * @param restartState
+     *            - the restart state file of the configured service
+     * @return the name of the MXBean monitoring the configured service
+     * @throws MalformedObjectNameException
+     */
+    public static ObjectName objectNameOf(String service, String restartState)
+	    throws MalformedObjectNameException {
+	return new ObjectName(String.format(
+		"%s:type=AutoConfigure,service=%s,restartState=%s", DOMAIN,
+		ObjectName.quote(String.valueOf(service)),
+		ObjectName.quote(String.valueOf(restartState))));
+    }
+
+    private final List<ServiceCollection> collections;
+    private volatile long deadline;
+    private final Map<Phase, Long> durations = new EnumMap<>(Phase.class);
+    private ObjectName name;
+    private Phase phase = Phase.INITIAL;
+    private long phaseStart = System.nanoTime();
+    private volatile DiscoveryRendezvous rendezvous;
+    private final List<SingletonService> services;
+
+    public LifecycleMonitor(List<SingletonService> services,
+	    List<ServiceCollection> collections) {
+	this.services = services;
+	this.collections = collections;
+    }
+
+    /**
+     * The auto configuration process has completed successfully
+     */
+    public void configured() {
+	enter(Phase.CONFIGURED);
+    }
+
+    /**
+     * The discovery of the required services has begun
+     * 
+     * @param rendezvous
+     *            - the rendezvous of the discovery
+     * @param timeout
+     *            - the time before the rendezvous is cancelled
+     * @param unit
+     */
+    public void discovering(DiscoveryRendezvous rendezvous, long timeout,
+	    TimeUnit unit) {
+	deadline = System.nanoTime() + unit.toNanos(timeout);
+	this.rendezvous = rendezvous;
+	enter(Phase.DISCOVERY_WAIT);
+    }
+
+    /**
+     * Enter the next phase, recording the duration of the current phase
+     * 
+     * @param next
+     */
+    public synchronized void enter(Phase next) {
+	long now = System.nanoTime();
+	if (phase.isTimed()) {
+	    Long total = durations.get(phase);
+	    durations.put(phase, (total == null ? 0L : total)
+		    + (now - phaseStart));
+	}
+	phase = next;
+	phaseStart = now;
+    }
+
+    /**
+     * The auto configuration process has failed
+     */
+    public void failed() {
+	enter(Phase.FAILED);
+    }
+
+    @Override
+    public Map<String, Integer> getDiscoveredServices() {
+	Map<String, Integer> discovered = new LinkedHashMap<>();
+	for (SingletonService service : services) {
+	    discovered.put(nameOf(service.variable, service.service),
+		    service.isDiscovered() ? 1 : 0);
+	}
+	for (ServiceCollection collection : collections) {
+	    discovered.put(nameOf(collection.variable, collection.service),
+		    collection.getDiscoveredCardinality());
+	}
+	return discovered;
+    }
+
+    @Override
+    public Map<String, Integer> getExpectedServices() {
+	Map<String, Integer> expected = new LinkedHashMap<>();
+	for (SingletonService service : services) {
+	    expected.put(nameOf(service.variable, service.service), 1);
+	}
+	for (ServiceCollection collection : collections) {
+	    expected.put(nameOf(collection.variable, collection.service),
+		    collection.cardinality);
+	}
+	return expected;
+    }
+
+    @Override
+    public long getMillisBeforeCancellation() {
+	DiscoveryRendezvous current = rendezvous;
+	if (current == null || current.isCompleted()
+		|| current.isCancelled()) {
+	    return -1;
+	}
+	return Math.max(0L,
+		TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    @Override
+    public synchronized String getPhase() {
+	return phase.name();
+    }
+
+    @Override
+    public synchronized Map<String, Long> getPhaseDurations() {
+	Map<String, Long> millis = new LinkedHashMap<>();
+	for (Map.Entry<Phase, Long> entry : durations.entrySet()) {
+	    millis.put(entry.getKey().name(),
+		    TimeUnit.NANOSECONDS.toMillis(entry.getValue()));
+	}
+	if (phase.isTimed()) {
+	    Long total = durations.get(phase);
+	    millis.put(phase.name(), TimeUnit.NANOSECONDS
+		    .toMillis((total == null ? 0L : total)
+			    + (System.nanoTime() - phaseStart)));
+	}
+	return millis;
+    }
+
+    @Override
+    public int getRemainingServices() {
+	DiscoveryRendezvous current = rendezvous;
+	return current == null ? 0 : current.getRemaining();
+    }
+
+    /**
+     * Register the MXBean on the platform MBean server, named by the service
+     * being configured. Failure to register is logged, as monitoring must not
+     * prevent configuration.
+     * 
+     * @param service
+     *            - the service URL format of the configured service
+     * @param restartState
+     *            - the restart state file of the configured service
+     */
+    public synchronized void register(String service, String restartState) {
+	if (name != null) {
+	    return;
+	}
+	try {
+	    ObjectName objectName = objectNameOf(service, restartState);
+	    ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+		    objectName);
+	    name = objectName;
+	    log.info(String.format("Registered auto configuration MXBean %s",
+		    name));
+	} catch (MalformedObjectNameException e) {
+	    throw new IllegalStateException("Invalid MXBean name", e);
+	} catch (JMException e) {
+	    log.warn("Unable to register auto configuration MXBean", e);
+	}
+    }
+
+    /**
+     * Unregister the MXBean from the platform MBean server
+     */
+    public synchronized void unregister() {
+	if (name == null) {
+	    return;
+	}
+	MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	try {
+	    server.unregisterMBean(name);
+	} catch (JMException e) {
+	    log.trace(String.format("Unable to unregister %s", name), e);
+	}
+	name = null;
+    }
+
+    private String nameOf(String variable, String service) {
+	return String.format("%s [%s]", variable, service);
+    }
+}
@@ -0,0 +1,41 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.jmx;
+
+/**
+ * The phases of the auto configuration process
+ * 
+ * @author hhildebrand
+ * 
+ */
+public enum Phase {
+    INITIAL(false), INTERFACE_RESOLUTION(true), PORT_ALLOCATION(true), REGISTRATION(
+	    true), DISCOVERY_WAIT(true), VARIABLE_RESOLUTION(true), RENDERING(
+	    true), RESTART_STATE_SAVE(true), JMX_START(true), CONFIGURED(false), FAILED(
+	    false);
+
+    private final boolean timed;
+
+    private Phase(boolean timed) {
+	this.timed = timed;
+    }
+
+    /**
+     * @return true if the duration of the phase is recorded
+     */
+    public boolean isTimed() {
+	return timed;
+    }
+}
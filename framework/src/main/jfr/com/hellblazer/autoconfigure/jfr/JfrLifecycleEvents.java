@@ -0,0 +1,113 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.jfr;
+
+import java.util.UUID;
+
+import com.hellblazer.autoconfigure.LifecycleEvents;
+import com.hellblazer.autoconfigure.configuration.Template;
+
+/**
+ * Records the activity of the auto configuration process as Flight Recorder
+ * events. Events are only populated when enabled in an active recording.
+ * 
+ * @author hhildebrand
+ * 
+ */
+public class JfrLifecycleEvents extends LifecycleEvents {
+
+    @Override
+    public Object beginRender() {
+	TemplateRenderRecord record = new TemplateRenderRecord();
+	if (!record.isEnabled()) {
+	    return null;
+	}
+	record.begin();
+	return record;
+    }
+
+    @Override
+    public Object beginRestartState() {
+	RestartStateRecord record = new RestartStateRecord();
+	if (!record.isEnabled()) {
+	    return null;
+	}
+	record.begin();
+	return record;
+    }
+
+    @Override
+    public void endRender(Object render, Template template, long bytes,
+	    boolean changed) {
+	if (render == null) {
+	    return;
+	}
+	TemplateRenderRecord record = (TemplateRenderRecord) render;
+	record.end();
+	if (record.shouldCommit()) {
+	    record.template = template.template;
+	    record.templateGroup = template.templateGroup;
+	    record.generated = template.generated.getPath();
+	    record.bytes = bytes;
+	    record.changed = changed;
+	    record.commit();
+	}
+    }
+
+    @Override
+    public void endRestartState(Object token, String file, boolean write) {
+	if (token == null) {
+	    return;
+	}
+	RestartStateRecord record = (RestartStateRecord) token;
+	record.end();
+	if (record.shouldCommit()) {
+	    record.file = file;
+	    record.write = write;
+	    record.commit();
+	}
+    }
+
+    @Override
+    public void propertiesPublished(UUID registration, int properties) {
+	PropertiesPublishedRecord record = new PropertiesPublishedRecord();
+	if (record.shouldCommit()) {
+	    record.registration = String.valueOf(registration);
+	    record.properties = properties;
+	    record.commit();
+	}
+    }
+
+    @Override
+    public void rendezvousArrival(Object serviceUrl, int remaining) {
+	RendezvousArrivalRecord record = new RendezvousArrivalRecord();
+	if (record.shouldCommit()) {
+	    record.serviceUrl = String.valueOf(serviceUrl);
+	    record.remaining = remaining;
+	    record.commit();
+	}
+    }
+
+    @Override
+    public void serviceEvent(String type, Object serviceUrl, Object definition) {
+	ServiceEventRecord record = new ServiceEventRecord();
+	if (record.shouldCommit()) {
+	    record.type = type;
+	    record.serviceUrl = String.valueOf(serviceUrl);
+	    record.definition = String.valueOf(definition);
+	    record.commit();
+	}
+    }
+}
@@ -0,0 +1,41 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The arrival of a distinct required service at the discovery rendezvous
+ * 
+ * @author hhildebrand
+ * 
+ */
+@Name("com.hellblazer.autoconfigure.RendezvousArrival")
+@Label("Rendezvous Arrival")
+@Category({ "Autoconfigure", "Discovery" })
+@Description("The arrival of a distinct required service at the discovery rendezvous")
+@StackTrace(false)
+class RendezvousArrivalRecord extends Event {
+    @Label("Remaining")
+    int remaining;
+
+    @Label("Service URL")
+    String serviceUrl;
+}
@@ -0,0 +1,41 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A read or write of the restart state file
+ * 
+ * @author hhildebrand
+ * 
+ */
+@Name("com.hellblazer.autoconfigure.RestartState")
+@Label("Restart State")
+@Category({ "Autoconfigure", "Restart" })
+@Description("A read or write of the restart state file")
+@StackTrace(false)
+class RestartStateRecord extends Event {
+    @Label("File")
+    String file;
+
+    @Label("Write")
+    boolean write;
+}
@@ -0,0 +1,52 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The rendering of a template into its generated configuration file
+ * 
+ * @author hhildebrand
+ * 
+ */
+@Name("com.hellblazer.autoconfigure.TemplateRender")
+@Label("Template Render")
+@Category({ "Autoconfigure", "Rendering" })
+@Description("The rendering of a template into its generated configuration file")
+@StackTrace(false)
+class TemplateRenderRecord extends Event {
+    @Label("Output Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Changed")
+    boolean changed;
+
+    @Label("Generated File")
+    String generated;
+
+    @Label("Template")
+    String template;
+
+    @Label("Template Group")
+    String templateGroup;
+}
@@ -15,7 +15,9 @@
 package com.hellblazer.autoconfigure;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
@@ -28,6 +30,9 @@ import java.io.FileInputStream;
 import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -44,6 +49,7 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import com.hellblazer.autoconfigure.configuration.Configuration;
 import com.hellblazer.autoconfigure.configuration.JmxConfiguration;
 import com.hellblazer.autoconfigure.configuration.ServiceCollection;
 import com.hellblazer.autoconfigure.configuration.SingletonService;
@@ -397,6 +403,68 @@ public class TestAutoConfigure {
 	}
     }
 
+    @Test
+    public void testBoundPortHandoff() throws Exception {
+	String serviceFormat = "service:test:tcp://%s:%s";
+	Map<String, String> serviceProperties = new HashMap<String, String>();
+	List<SingletonService> serviceDefinitions = new ArrayList<>();
+	List<ServiceCollection> serviceCollectionDefinitions = new ArrayList<>();
+	List<Template> templates = new ArrayList<>();
+	List<UniqueDirectory> uniqueDirectories = new ArrayList<>();
+	Map<String, String> substitutions = new HashMap<>();
+	List<String> additionalPorts = new ArrayList<>();
+	additionalPorts.add("admin.port");
+	final AutoConfigure autoConfigure = new AutoConfigure(serviceFormat,
+		interfaceName, 0, false, serviceProperties, discovery,
+		serviceDefinitions, serviceCollectionDefinitions, templates,
+		substitutions, uniqueDirectories, additionalPorts, null, null,
+		true, jmxConfig, null);
+	final AtomicReference<Map<String, ServerSocketChannel>> handedOff = new AtomicReference<>();
+	AutoConfigureService configuredService = new AutoConfigureService(
+		autoConfigure) {
+
+	    @Override
+	    public void succeed(Map<String, File> configurations)
+		    throws Exception {
+	    }
+
+	    @Override
+	    public void succeed(Map<String, File> configurations,
+		    Map<String, ServerSocketChannel> boundPorts)
+		    throws Exception {
+		handedOff.set(boundPorts);
+	    }
+
+	    @Override
+	    public void fail(Map<String, File> configurations) throws Exception {
+		handedOff.set(Collections.<String, ServerSocketChannel> emptyMap());
+	    }
+	};
+	configuredService.start(10, TimeUnit.MILLISECONDS);
+	assertTrue("configuration did not complete",
+		Utils.waitForCondition(1000, new Condition() {
+		    @Override
+		    public boolean isTrue() {
+			return handedOff.get() != null;
+		    }
+		}));
+	Map<String, ServerSocketChannel> ports = handedOff.get();
+	try {
+	    assertEquals(2, ports.size());
+	    ServerSocketChannel service = ports
+		    .get(PortReservation.SERVICE_PORT);
+	    assertNotNull(service);
+	    assertTrue(service.isOpen());
+	    assertEquals(autoConfigure.getBound().getPort(), service.socket()
+		    .getLocalPort());
+	    assertTrue(ports.get("admin.port").isOpen());
+	} finally {
+	    for (ServerSocketChannel channel : ports.values()) {
+		channel.close();
+	    }
+	}
+    }
+
     @Test
     public void testNoServicesRequired() {
 	String serviceFormat = "service:test:tcp://%s:%s";
@@ -441,6 +509,84 @@ public class TestAutoConfigure {
 	assertTrue("configuration did not succeed", succeeded.get());
     }
 
+    @Test
+    public void testReloadRetriedAfterFailure() throws Exception {
+	try (TemporaryDirectory tempDirectory = new TemporaryDirectory(
+		"reload", "dir")) {
+	    File group = new File(tempDirectory.directory, "group.stg");
+	    Files.write(group.toPath(),
+		    "configuration(threads) ::= <<threads=<threads> >>\n"
+			    .getBytes(StandardCharsets.UTF_8));
+	    File generated = new File(tempDirectory.directory,
+		    "generated.properties");
+	    Template template = new Template();
+	    template.name = "generated";
+	    template.templateGroup = group.getAbsolutePath();
+	    template.generated = generated;
+	    List<Template> templates = new ArrayList<>();
+	    templates.add(template);
+	    Map<String, String> substitutions = new HashMap<>();
+	    substitutions.put("threads", "5");
+	    AutoConfigure autoConfigure = new AutoConfigure(
+		    "service:test:tcp://%s:%s", interfaceName, 0, false,
+		    new HashMap<String, String>(), discovery,
+		    new ArrayList<SingletonService>(),
+		    new ArrayList<ServiceCollection>(), templates,
+		    substitutions, new ArrayList<UniqueDirectory>(),
+		    new ArrayList<String>(), null, null, true, jmxConfig, null);
+	    final AtomicBoolean succeeded = new AtomicBoolean();
+	    final AtomicReference<Map<String, File>> reconfigured = new AtomicReference<>();
+	    AutoConfigureService configuredService = new AutoConfigureService(
+		    autoConfigure) {
+
+		@Override
+		public void reconfigured(Map<String, File> configurations)
+			throws Exception {
+		    reconfigured.set(configurations);
+		}
+
+		@Override
+		public void succeed(Map<String, File> configurations)
+			throws Exception {
+		    succeeded.set(true);
+		}
+
+		@Override
+		public void fail(Map<String, File> configurations)
+			throws Exception {
+		}
+	    };
+	    configuredService.start(10, TimeUnit.MILLISECONDS);
+	    assertTrue("configuration did not succeed",
+		    Utils.waitForCondition(1000, new Condition() {
+			@Override
+			public boolean isTrue() {
+			    return succeeded.get();
+			}
+		    }));
+	    assertEquals("threads=5 ", read(generated));
+
+	    Configuration reloaded = new Configuration();
+	    reloaded.templates.add(template);
+	    reloaded.variables.put("threads", "7");
+
+	    // a non empty directory cannot be replaced by the generated file
+	    assertTrue(generated.delete());
+	    assertTrue(new File(generated, "blocked").mkdirs());
+	    assertFalse("failed reload applied", autoConfigure.reload(reloaded));
+	    assertEquals("running configuration changed", "5",
+		    substitutions.get("threads"));
+	    assertNull(reconfigured.get());
+
+	    assertTrue(new File(generated, "blocked").delete());
+	    assertTrue(generated.delete());
+	    assertTrue("reload not retried", autoConfigure.reload(reloaded));
+	    assertEquals("threads=7 ", read(generated));
+	    assertEquals(Collections.singletonMap("generated", generated),
+		    reconfigured.get());
+	}
+    }
+
     @Test
     public void testServiceRegistration() throws Exception {
 	String serviceFormat = "service:test:tcp://%s:%s";
@@ -516,4 +662,9 @@ public class TestAutoConfigure {
 		eq(AutoConfigure.constructFilter(serviceCollection.service,
 			serviceCollection.properties)));
     }
+
+    private String read(File file) throws Exception {
+	return new String(Files.readAllBytes(file.toPath()),
+		StandardCharsets.UTF_8);
+    }
 }
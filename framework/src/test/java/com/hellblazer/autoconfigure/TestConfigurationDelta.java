@@ -0,0 +1,141 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.hellblazer.autoconfigure.configuration.Configuration;
+import com.hellblazer.autoconfigure.configuration.Template;
+import com.hellblazer.utils.TemporaryDirectory;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestConfigurationDelta {
+
+	@Test
+	public void testDelta() {
+		Configuration running = new Configuration();
+		running.variables.put("threads", "5");
+		running.variables.put("removed", "x");
+		running.variables.put("same", "y");
+		running.serviceProperties.put("id", "1");
+		running.serviceProperties.put("gone", "z");
+		running.templates.add(template("kept", "kept.stg"));
+		running.templates.add(template("changed", "changed.stg"));
+		running.templates.add(template("dropped", "dropped.stg"));
+
+		Configuration reloaded = new Configuration();
+		reloaded.variables.put("threads", "10");
+		reloaded.variables.put("same", "y");
+		reloaded.variables.put("added", "w");
+		reloaded.serviceProperties.put("id", "2");
+		reloaded.serviceProperties.put("new", "v");
+		reloaded.templates.add(template("kept", "kept.stg"));
+		reloaded.templates.add(template("changed", "changed-v2.stg"));
+		reloaded.templates.add(template("new", "new.stg"));
+
+		ConfigurationDelta delta = ConfigurationDelta.between(running,
+				reloaded);
+		assertFalse(delta.isEmpty());
+		assertEquals(new HashSet<>(Arrays.asList("threads", "removed",
+				"added")), delta.getChangedVariables());
+		assertEquals(new HashSet<>(Arrays.asList("changed", "dropped")),
+				names(delta.getRemovedTemplates()));
+		assertEquals(new HashSet<>(Arrays.asList("changed", "new")),
+				names(delta.getAddedTemplates()));
+		assertEquals(2, delta.getChangedProperties().size());
+		assertEquals("2", delta.getChangedProperties().get("id"));
+		assertEquals(Collections.singleton("gone"),
+				delta.getRemovedProperties());
+		assertTrue(delta.isPropertiesChanged());
+
+		assertTrue(ConfigurationDelta.between(reloaded, reloaded).isEmpty());
+	}
+
+	@Test
+	public void testWatcherReloadsOnlyChangedContent() throws Exception {
+		try (TemporaryDirectory tempDirectory = new TemporaryDirectory("watch",
+				"dir")) {
+			File yaml = new File(tempDirectory.directory, "autoconfigure.yml");
+			write(yaml, "variables:\n    threads: 5\n");
+			final AtomicReference<Configuration> reloaded =
+					new AtomicReference<>();
+			final AtomicBoolean configured = new AtomicBoolean(false);
+			ConfigurationWatcher watcher = new ConfigurationWatcher(yaml,
+					new ConfigurationWatcher.Reload() {
+				@Override
+				public boolean reload(Configuration configuration) {
+					if (!configured.get()) {
+						return false;
+					}
+					reloaded.set(configuration);
+					return true;
+				}
+			});
+			try {
+				assertFalse("unchanged content reloaded", watcher.poll());
+				write(yaml, "variables:\n    threads: 7\n");
+				assertFalse("change applied before configuration",
+						watcher.poll());
+				configured.set(true);
+				assertTrue("deferred change lost", watcher.poll());
+				assertEquals("7", reloaded.get().variables.get("threads"));
+				write(yaml, "variables: [unparseable\n");
+				assertFalse("invalid content reloaded", watcher.poll());
+				write(yaml, "variables:\n    threads: 10\n");
+				assertTrue(watcher.poll());
+				assertEquals("10", reloaded.get().variables.get("threads"));
+				assertFalse("same content reloaded twice", watcher.poll());
+			} finally {
+				watcher.close();
+			}
+		}
+	}
+
+	private HashSet<String> names(Iterable<Template> templates) {
+		HashSet<String> names = new HashSet<>();
+		for (Template template : templates) {
+			names.add(template.name);
+		}
+		return names;
+	}
+
+	private Template template(String name, String group) {
+		Template template = new Template();
+		template.name = name;
+		template.templateGroup = group;
+		template.generated = new File(name + ".properties");
+		return template;
+	}
+
+	private void write(File file, String content) throws Exception {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,119 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestConfigurationFuture {
+	private static final Executor DIRECT = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	@Test
+	public void testCancel() {
+		AtomicInteger cancelled = new AtomicInteger();
+		ConfigurationFuture future = new ConfigurationFuture(counter(
+				cancelled));
+		AtomicInteger notified = new AtomicInteger();
+		future.addListener(counter(notified), DIRECT);
+		assertTrue(future.cancel(true));
+		assertFalse(future.cancel(true));
+		future.complete(Collections.<String, File> emptyMap());
+		assertTrue(future.isCancelled());
+		assertEquals(1, cancelled.get());
+		assertEquals(1, notified.get());
+	}
+
+	@Test
+	public void testComplete() throws Exception {
+		ConfigurationFuture future = new ConfigurationFuture(null);
+		AtomicInteger notified = new AtomicInteger();
+		future.addListener(counter(notified), DIRECT);
+		assertEquals(0, notified.get());
+		Map<String, File> configurations = Collections.singletonMap("a",
+				new File("a"));
+		future.complete(configurations);
+		assertEquals(1, notified.get());
+		assertSame(configurations, future.get());
+
+		future.addListener(counter(notified), DIRECT);
+		assertEquals("late listener not run", 2, notified.get());
+	}
+
+	@Test
+	public void testFail() throws Exception {
+		ConfigurationFuture future = new ConfigurationFuture(null);
+		IllegalStateException cause = new IllegalStateException("failed");
+		future.fail(cause);
+		try {
+			future.get();
+			fail("expected failure");
+		} catch (ExecutionException e) {
+			assertSame(cause, e.getCause());
+		}
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		ConfigurationFuture future = new ConfigurationFuture(null);
+		try {
+			future.get(10, TimeUnit.MILLISECONDS);
+			fail("expected timeout");
+		} catch (TimeoutException e) {
+			// expected
+		}
+		assertFalse(future.isDone());
+		future.cancel(false);
+		assertTrue(future.isDone());
+		try {
+			future.get(10, TimeUnit.MILLISECONDS);
+			fail("expected cancellation");
+		} catch (CancellationException e) {
+			// expected
+		}
+	}
+
+	private Runnable counter(final AtomicInteger count) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				count.incrementAndGet();
+			}
+		};
+	}
+}
@@ -0,0 +1,87 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import com.hellblazer.autoconfigure.configuration.Configuration;
+import com.hellblazer.autoconfigure.configuration.ConfigurationSnapshot;
+import com.hellblazer.autoconfigure.configuration.RestartState;
+import com.hellblazer.autoconfigure.configuration.YamlHelper;
+import com.hellblazer.utils.TemporaryDirectory;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestConfigurationSnapshot {
+
+	@Test
+	public void testSharedReaders() {
+		assertSame(YamlHelper.reader(Configuration.class),
+				YamlHelper.reader(Configuration.class));
+		assertSame(YamlHelper.jsonReader(RestartState.class),
+				YamlHelper.jsonReader(RestartState.class));
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		try (TemporaryDirectory tempDirectory = new TemporaryDirectory(
+				"snapshot", "dir")) {
+			File yaml = new File(tempDirectory.directory, "autoconfigure.yml");
+			Files.copy(new File(
+					"src/test/resources/yaml/autoconfigure.yml").toPath(),
+					yaml.toPath());
+			File snapshot = ConfigurationSnapshot.snapshotOf(yaml);
+
+			Configuration parsed = YamlHelper.fromYaml(yaml, true);
+			assertTrue("snapshot not written", snapshot.isFile());
+			Configuration restored = YamlHelper.fromYaml(yaml, true);
+			assertEquals(parsed.serviceUrl, restored.serviceUrl);
+			assertEquals(parsed.variables, restored.variables);
+			assertEquals(new InetSocketAddress("localhost", 6754),
+					restored.gossip.seeds.get(0));
+			assertEquals(5, restored.serviceCollections.get(0).cardinality);
+			assertEquals(new File("/tmp"), restored.uniqueDirectories.get(
+					0).base);
+
+			String digest = ConfigurationSnapshot.digest(Files.readAllBytes(
+					yaml.toPath()));
+			assertNotNull(ConfigurationSnapshot.read(snapshot, digest));
+
+			Files.write(yaml.toPath(),
+					"serviceUrl: \"service:changed:%s:%s\"\n".getBytes(
+					StandardCharsets.UTF_8));
+			assertNull("stale snapshot used", ConfigurationSnapshot.read(
+					snapshot, ConfigurationSnapshot.digest(Files.readAllBytes(
+					yaml.toPath()))));
+			assertEquals("service:changed:%s:%s", YamlHelper.fromYaml(yaml,
+					true).serviceUrl);
+			assertEquals("service:changed:%s:%s", YamlHelper.fromYaml(yaml,
+					true).serviceUrl);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.stringtemplate.v4.ST;
+
+import com.hellblazer.utils.TemporaryDirectory;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestConfigurationWriter {
+
+	@Test
+	public void testAbort() throws Exception {
+		try (TemporaryDirectory tempDirectory = new TemporaryDirectory(
+				"config-writer", "dir")) {
+			File generated = new File(tempDirectory.directory, "aborted.txt");
+			ConfigurationWriter writer = new ConfigurationWriter(true);
+			writer.write(new ST("hello"), generated);
+			writer.abort();
+			assertFalse(generated.exists());
+			assertEquals(0, tempDirectory.directory.listFiles().length);
+		}
+	}
+
+	@Test
+	public void testGroupCommit() throws Exception {
+		try (TemporaryDirectory tempDirectory = new TemporaryDirectory(
+				"config-writer", "dir")) {
+			File generated = new File(tempDirectory.directory, "group.txt");
+			ConfigurationWriter writer = new ConfigurationWriter(true);
+			ST st = new ST("hello <name>");
+			st.add("name", "world");
+			writer.write(st, generated);
+			assertFalse("output visible before commit", generated.exists());
+			writer.commit();
+			assertTrue(generated.exists());
+			assertEquals("hello world", read(generated));
+			assertEquals(1, tempDirectory.directory.listFiles().length);
+		}
+	}
+
+	@Test
+	public void testReplace() throws Exception {
+		try (TemporaryDirectory tempDirectory = new TemporaryDirectory(
+				"config-writer", "dir")) {
+			File generated = new File(tempDirectory.directory, "replaced.txt");
+			ConfigurationWriter writer = new ConfigurationWriter(false);
+			writer.write(new ST("first"), generated);
+			assertEquals("first", read(generated));
+			writer.write(new ST("second"), generated);
+			assertEquals("second", read(generated));
+			assertEquals(1, tempDirectory.directory.listFiles().length);
+		}
+	}
+
+	private String read(File file) throws Exception {
+		return new String(Files.readAllBytes(file.toPath()),
+				Charset.defaultCharset());
+	}
+}
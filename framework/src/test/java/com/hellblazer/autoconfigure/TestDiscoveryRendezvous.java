@@ -0,0 +1,317 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.hellblazer.autoconfigure.configuration.ExecutionMode;
+import com.hellblazer.autoconfigure.configuration.ServiceCollection;
+import com.hellblazer.slp.ServiceReference;
+import com.hellblazer.slp.ServiceScope;
+import com.hellblazer.slp.ServiceURL;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestDiscoveryRendezvous {
+
+	@Test
+	public void testCancel() {
+		AtomicInteger completed = new AtomicInteger();
+		AtomicInteger cancelled = new AtomicInteger();
+		DiscoveryRendezvous rendezvous = new DiscoveryRendezvous(1,
+				counter(completed), counter(cancelled));
+		assertTrue(rendezvous.cancel());
+		assertFalse(rendezvous.cancel());
+		assertFalse(rendezvous.arrive());
+		assertEquals(0, completed.get());
+		assertEquals(1, cancelled.get());
+	}
+
+	@Test
+	public void testCompletesOnce() throws Exception {
+		final int parties = 64;
+		final AtomicInteger completed = new AtomicInteger();
+		final DiscoveryRendezvous rendezvous = new DiscoveryRendezvous(parties,
+				counter(completed), null);
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(parties * 2);
+		for (int i = 0; i < parties * 2; i++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						rendezvous.arrive();
+					} catch (InterruptedException e) {
+						return;
+					} finally {
+						finished.countDown();
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		assertEquals(1, completed.get());
+		assertTrue(rendezvous.isCompleted());
+		assertFalse(rendezvous.cancel());
+	}
+
+	@Test
+	public void testDiscoverDuringCanonicalization() throws Exception {
+		final int members = 256;
+		final ServiceCollection collection = new ServiceCollection();
+		collection.cardinality = members;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(members);
+		for (int i = 0; i < members; i++) {
+			final int port = i;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						collection.discover(reference(
+								UUID.randomUUID().toString(), port));
+					} catch (InterruptedException e) {
+						return;
+					} finally {
+						finished.countDown();
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		while (finished.getCount() > 0) {
+			collection.getCluster();
+		}
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		assertEquals(members, collection.getDiscoveredCardinality());
+		assertEquals(members, collection.getCluster().getCardinality());
+		assertTrue(collection.isComplete());
+	}
+
+	@Test
+	public void testCancellationOffScheduler() throws Exception {
+		final AtomicReference<Thread> cancelled = new AtomicReference<>();
+		final CountDownLatch latch = new CountDownLatch(1);
+		DiscoveryRendezvous rendezvous = new DiscoveryRendezvous(1, null,
+				new Runnable() {
+			@Override
+			public void run() {
+				cancelled.set(Thread.currentThread());
+				latch.countDown();
+			}
+		});
+		ScheduledExecutorService scheduler =
+				Executors.newSingleThreadScheduledExecutor();
+		try {
+			final Thread schedulerThread = scheduler.submit(
+					new Callable<Thread>() {
+				@Override
+				public Thread call() {
+					return Thread.currentThread();
+				}
+			}).get();
+			rendezvous.scheduleCancellation(10, TimeUnit.MILLISECONDS,
+					scheduler, LifecycleExecutor.create(ExecutionMode.INLINE,
+					1).detached());
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+			assertNotSame(schedulerThread, cancelled.get());
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void testQuorum() throws Exception {
+		ServiceCollection collection = new ServiceCollection();
+		collection.cardinality = 3;
+		collection.minCardinality = 2;
+		assertEquals(2, collection.getQuorum());
+
+		assertTrue(collection.discover(reference(UUID.randomUUID().toString(),
+				1)));
+		assertTrue(collection.discover(reference(UUID.randomUUID().toString(),
+				2)));
+		assertTrue(collection.isSatisfied());
+		assertFalse(collection.isComplete());
+		assertFalse("member beyond quorum counted", collection.discover(
+				reference(UUID.randomUUID().toString(), 3)));
+		assertTrue(collection.isComplete());
+
+		collection.seal();
+		assertFalse(collection.discover(reference(UUID.randomUUID().toString(),
+				4)));
+		assertEquals(3, collection.getCluster().getCardinality());
+		assertEquals(1, collection.getPending().size());
+	}
+
+	@Test
+	public void testRedeliveryIgnored() throws Exception {
+		ServiceCollection collection = new ServiceCollection();
+		collection.cardinality = 2;
+		ServiceReference a = reference(UUID.randomUUID().toString(), 1);
+		ServiceReference b = reference(UUID.randomUUID().toString(), 2);
+		ServiceReference c = reference(UUID.randomUUID().toString(), 3);
+
+		assertTrue(collection.discover(a));
+		assertFalse("redelivery counted", collection.discover(a));
+		assertFalse(collection.isSatisfied());
+		assertTrue(collection.discover(b));
+		assertTrue(collection.isSatisfied());
+		assertFalse("surplus member counted", collection.discover(c));
+		assertEquals(3, collection.getDiscoveredCardinality());
+		assertTrue(collection.contains(a));
+
+		assertTrue(collection.remove(a));
+		assertFalse(collection.contains(a));
+		assertTrue("surplus member does not satisfy", collection.isSatisfied());
+	}
+
+	@Test
+	public void testRestoredMembership() throws Exception {
+		ServiceCollection collection = new ServiceCollection();
+		collection.cardinality = 2;
+		String registrationA = "00000000-0000-0000-0000-00000000000a";
+		String registrationB = "00000000-0000-0000-0000-00000000000b";
+		ServiceReference a = reference(registrationA, 1);
+		ServiceReference b = reference(registrationB, 2);
+		collection.restore(Arrays.asList(service(registrationA, "1"),
+				service(registrationB, "2")));
+		assertTrue(collection.isComplete());
+		assertFalse(collection.isConfirmed());
+		assertEquals(2, collection.getMembers().size());
+
+		assertTrue(collection.confirm(a));
+		assertFalse("confirmed twice", collection.confirm(a));
+		assertFalse("restored member counted", collection.discover(a));
+		assertEquals("1", collection.getMembers().get(0).getProperties().get(
+				collection.idProperty));
+
+		List<Service> expired = collection.expireUnconfirmed();
+		assertEquals(1, expired.size());
+		assertEquals(registrationB, expired.get(0).getProperties().get(
+				ServiceScope.SERVICE_REGISTRATION));
+		assertTrue(collection.isConfirmed());
+		assertFalse(collection.contains(b));
+		assertFalse(collection.isComplete());
+		assertTrue(collection.discover(b));
+		assertTrue(collection.isComplete());
+		assertEquals(Arrays.asList("1", "2"), ids(collection));
+		assertEquals("2", collection.totalOrderingIndexOf(UUID.fromString(
+				registrationB)));
+	}
+
+	@Test
+	public void testTotalOrderingAgreement() throws Exception {
+		String[] registrations = { "00000000-0000-0000-0000-00000000000c",
+				"00000000-0000-0000-0000-00000000000a",
+				"00000000-0000-0000-0000-00000000000d",
+				"00000000-0000-0000-0000-00000000000b" };
+		ServiceCollection first = new ServiceCollection();
+		first.cardinality = registrations.length;
+		ServiceCollection second = new ServiceCollection();
+		second.cardinality = registrations.length;
+		for (int i = 0; i < registrations.length; i++) {
+			first.discover(reference(registrations[i], i));
+			second.discover(reference(
+					registrations[registrations.length - 1 - i],
+					registrations.length - 1 - i));
+		}
+		assertEquals(indexes(first), indexes(second));
+		assertEquals(Arrays.asList("1", "2", "3", "4"), ids(first));
+		assertEquals("1", first.totalOrderingIndexOf(UUID.fromString(
+				"00000000-0000-0000-0000-00000000000a")));
+		assertEquals("4", first.totalOrderingIndexOf(UUID.fromString(
+				"00000000-0000-0000-0000-00000000000d")));
+
+		ServiceReference departed = reference(registrations[1], 1);
+		assertTrue(first.remove(departed));
+		assertTrue(second.remove(departed));
+		assertEquals(indexes(first), indexes(second));
+		assertEquals(Arrays.asList("1", "2", "3"), ids(second));
+	}
+
+	private Runnable counter(final AtomicInteger count) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				count.incrementAndGet();
+			}
+		};
+	}
+
+	private Map<String, String> indexes(ServiceCollection collection) {
+		Map<String, String> indexes = new HashMap<>();
+		for (Service member : collection.getCluster().getMembers()) {
+			indexes.put(member.getProperties().get(
+					ServiceScope.SERVICE_REGISTRATION),
+					member.getProperties().get(collection.idProperty));
+		}
+		return indexes;
+	}
+
+	private List<String> ids(ServiceCollection collection) {
+		List<String> ids = new ArrayList<>();
+		for (Service member : collection.getCluster().getMembers()) {
+			ids.add(member.getProperties().get(collection.idProperty));
+		}
+		return ids;
+	}
+
+	private Service service(String registration, String id) throws Exception {
+		Map<String, String> properties = new HashMap<>();
+		properties.put(ServiceScope.SERVICE_REGISTRATION, registration);
+		properties.put("totalOrderingIndex", id);
+		return new Service(new ServiceURL("service:test:tcp://example.com:1"),
+				properties);
+	}
+
+	private ServiceReference reference(String registration, int port) {
+		ServiceReference reference = mock(ServiceReference.class);
+		ServiceURL url = mock(ServiceURL.class);
+		when(url.getHost()).thenReturn("example.com");
+		when(url.getPort()).thenReturn(port);
+		when(reference.getUrl()).thenReturn(url);
+		Map<String, String> properties = new HashMap<>();
+		properties.put(ServiceScope.SERVICE_REGISTRATION, registration);
+		when(reference.getProperties()).thenReturn(properties);
+		return reference;
+	}
+}
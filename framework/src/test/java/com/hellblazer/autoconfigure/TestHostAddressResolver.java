@@ -0,0 +1,107 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.hellblazer.autoconfigure.HostAddressResolver.Network;
+import com.hellblazer.autoconfigure.configuration.AddressResolution;
+import com.hellblazer.autoconfigure.configuration.Configuration;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestHostAddressResolver {
+
+	@Test
+	public void testCanonicalByDefault() {
+		assertEquals(AddressResolution.CANONICAL,
+				new Configuration().addressResolution);
+	}
+
+	@Test
+	public void testFamilyPreference() throws Exception {
+		InetAddress v4 = InetAddress.getByName("10.0.0.1");
+		InetAddress linkLocal = InetAddress.getByName("fe80::1");
+		InetAddress v6 = InetAddress.getByName("fd00::1");
+		List<InetAddress> candidates = Arrays.asList(linkLocal, v4, v6);
+		assertEquals(v4, resolver(false).select(candidates));
+		assertEquals(v6, resolver(true).select(candidates));
+		assertEquals(v4, resolver(true).select(Collections.singletonList(v4)));
+		assertNull(resolver(false).select(
+				Collections.<InetAddress> emptyList()));
+	}
+
+	@Test
+	public void testLiteral() throws Exception {
+		InetAddress raw = InetAddress.getByName("192.168.1.7");
+		InetAddress named = resolver(false).name(raw);
+		assertEquals("192.168.1.7", named.getHostName());
+		assertEquals(raw, named);
+
+		InetAddress cached = HostAddressResolver.named("node.example.com",
+				"192.168.1.7");
+		assertEquals("node.example.com", cached.getHostName());
+		assertEquals(raw, cached);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNamedRequiresLiteral() {
+		HostAddressResolver.named("node.example.com", "node.example.com");
+	}
+
+	@Test
+	public void testNetworks() throws Exception {
+		Network network = new Network("172.16.0.0/12");
+		assertTrue(network.contains(InetAddress.getByName("172.31.255.1")));
+		assertFalse(network.contains(InetAddress.getByName("172.32.0.1")));
+		assertFalse(network.contains(InetAddress.getByName("fd00::1")));
+		assertTrue(new Network("fd00::/8").contains(InetAddress.getByName(
+				"fd12::1")));
+		assertTrue(new Network("10.1.2.3").contains(InetAddress.getByName(
+				"10.1.2.3")));
+		assertFalse(new Network("10.1.2.3").contains(InetAddress.getByName(
+				"10.1.2.4")));
+
+		InetAddress first = InetAddress.getByName("192.168.1.7");
+		InetAddress preferred = InetAddress.getByName("10.0.0.1");
+		HostAddressResolver resolver = new HostAddressResolver(
+				AddressResolution.LITERAL, false, Arrays.asList(new Network(
+				"10.0.0.0/8")), 0);
+		assertEquals(preferred, resolver.select(Arrays.asList(first,
+				preferred)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidNetwork() {
+		new Network("example.com/8");
+	}
+
+	private HostAddressResolver resolver(boolean preferIpV6) {
+		return new HostAddressResolver(AddressResolution.LITERAL, preferIpV6,
+				Collections.<Network> emptyList(), 0);
+	}
+}
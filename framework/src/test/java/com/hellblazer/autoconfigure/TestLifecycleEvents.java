@@ -0,0 +1,49 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.hellblazer.autoconfigure.configuration.Template;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestLifecycleEvents {
+
+	@Test
+	public void testNoRecording() {
+		LifecycleEvents events = LifecycleEvents.load();
+		assertNotNull(events);
+		// no recording is active, so no event is begun
+		assertNull(events.beginRender());
+		assertNull(events.beginRestartState());
+		Template template = new Template();
+		template.generated = new File("generated.txt");
+		events.endRender(null, template, 0, false);
+		events.endRestartState(null, "restart.state", true);
+		events.propertiesPublished(UUID.randomUUID(), 1);
+		events.rendezvousArrival("service:test:tcp://example.com:1", 0);
+		events.serviceEvent("REGISTERED", "service:test:tcp://example.com:1",
+				"definition");
+	}
+}
@@ -0,0 +1,144 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.hellblazer.autoconfigure.configuration.ExecutionMode;
+import com.hellblazer.slp.ServiceEvent;
+import com.hellblazer.slp.ServiceListener;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestLifecycleExecutor {
+
+	@Test
+	public void testDispatchOrder() throws Exception {
+		LifecycleExecutor executor = LifecycleExecutor.create(
+				ExecutionMode.POOLED, 4);
+		try {
+			final int events = 100;
+			final List<ServiceEvent> delivered = Collections.synchronizedList(
+					new ArrayList<ServiceEvent>());
+			final CountDownLatch latch = new CountDownLatch(events);
+			ServiceListener listener = executor.dispatching(
+					new ServiceListener() {
+				@Override
+				public void serviceChanged(ServiceEvent event) {
+					delivered.add(event);
+					latch.countDown();
+				}
+			});
+			List<ServiceEvent> sent = new ArrayList<>();
+			for (int i = 0; i < events; i++) {
+				ServiceEvent event = mock(ServiceEvent.class);
+				sent.add(event);
+				listener.serviceChanged(event);
+			}
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+			assertEquals(sent, delivered);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testDetached() throws Exception {
+		LifecycleExecutor executor = LifecycleExecutor.create(
+				ExecutionMode.INLINE, 1);
+		final AtomicReference<Thread> ran = new AtomicReference<>();
+		final CountDownLatch latch = new CountDownLatch(1);
+		executor.detached().execute(new Runnable() {
+			@Override
+			public void run() {
+				ran.set(Thread.currentThread());
+				latch.countDown();
+			}
+		});
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertNotSame(Thread.currentThread(), ran.get());
+	}
+
+	@Test
+	public void testInline() {
+		LifecycleExecutor executor = LifecycleExecutor.create(
+				ExecutionMode.INLINE, 1);
+		final AtomicReference<Thread> ran = new AtomicReference<>();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				ran.set(Thread.currentThread());
+			}
+		});
+		assertSame(Thread.currentThread(), ran.get());
+		ServiceListener listener = mock(ServiceListener.class);
+		assertSame(listener, executor.dispatching(listener));
+	}
+
+	@Test
+	public void testRejectedDispatch() {
+		LifecycleExecutor executor = LifecycleExecutor.create(
+				ExecutionMode.POOLED, 1);
+		ServiceListener listener = executor.dispatching(mock(
+				ServiceListener.class));
+		executor.shutdown();
+		for (int i = 0; i < 2; i++) {
+			try {
+				listener.serviceChanged(mock(ServiceEvent.class));
+				fail("rejected dispatch was queued");
+			} catch (RejectedExecutionException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testVirtual() throws Exception {
+		LifecycleExecutor executor = LifecycleExecutor.create(
+				ExecutionMode.VIRTUAL, 1);
+		try {
+			final AtomicReference<Thread> ran = new AtomicReference<>();
+			final CountDownLatch latch = new CountDownLatch(1);
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					ran.set(Thread.currentThread());
+					latch.countDown();
+				}
+			});
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+			assertNotSame(Thread.currentThread(), ran.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
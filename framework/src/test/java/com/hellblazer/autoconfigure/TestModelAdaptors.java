@@ -0,0 +1,97 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroup;
+import org.stringtemplate.v4.STGroupString;
+import org.stringtemplate.v4.misc.STNoSuchPropertyException;
+
+import com.hellblazer.slp.ServiceURL;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestModelAdaptors {
+
+	@Test
+	public void testClusterRendering() {
+		STGroup group = new STGroupString(
+				"peers(cluster) ::= <<<cluster.cardinality>:<cluster.members:{ s | <s.host>:<s.port>:<s.id>}; separator=\",\">:<cluster.first.host> >>");
+		group.registerModelAdaptor(Service.class, new ServiceModelAdaptor(
+				"none"));
+		group.registerModelAdaptor(Cluster.class, new ClusterModelAdaptor());
+		List<Service> members = new ArrayList<>();
+		members.add(service("a.example.com", 1, "1"));
+		members.add(service("b.example.com", 2, null));
+		ST st = group.getInstanceOf("peers");
+		st.add("cluster", new Cluster<>(members));
+		assertEquals("2:a.example.com:1:1,b.example.com:2:none:a.example.com ",
+				st.render());
+	}
+
+	@Test
+	public void testMissingServiceProperty() {
+		Service service = service("example.com", 1, null);
+		ServiceModelAdaptor adaptor = new ServiceModelAdaptor("missing");
+		assertEquals("example.com", adaptor.getProperty(null, null, service,
+				"host", "host"));
+		assertEquals(1, adaptor.getProperty(null, null, service, "port",
+				"port"));
+		assertEquals("missing", adaptor.getProperty(null, null, service, "id",
+				"id"));
+	}
+
+	@Test(expected = STNoSuchPropertyException.class)
+	public void testMissingServicePropertyError() {
+		new ServiceModelAdaptor().getProperty(null, null, service("example.com",
+				1, null), "id", "id");
+	}
+
+	@Test
+	public void testClusterProperties() {
+		ClusterModelAdaptor adaptor = new ClusterModelAdaptor();
+		Cluster<String> cluster = new Cluster<>(Arrays.asList("a", "b"));
+		assertEquals(2, adaptor.getProperty(null, null, cluster, "cardinality",
+				"cardinality"));
+		assertEquals("a", adaptor.getProperty(null, null, cluster, "first",
+				"first"));
+		assertEquals(Arrays.asList("a", "b"), adaptor.getProperty(null, null,
+				cluster, "members", "members"));
+	}
+
+	private Service service(String host, int port, String id) {
+		ServiceURL url = mock(ServiceURL.class);
+		when(url.getHost()).thenReturn(host);
+		when(url.getPort()).thenReturn(port);
+		Map<String, String> properties = new HashMap<>();
+		if (id != null) {
+			properties.put("id", id);
+		}
+		return new Service(url, properties);
+	}
+}
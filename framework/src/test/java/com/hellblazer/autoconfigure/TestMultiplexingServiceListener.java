@@ -0,0 +1,96 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.hellblazer.slp.ServiceEvent;
+import com.hellblazer.slp.ServiceListener;
+import com.hellblazer.slp.ServiceReference;
+import com.hellblazer.slp.ServiceScope;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestMultiplexingServiceListener {
+
+	@Test
+	public void testDispatch() {
+		ServiceListener thor = mock(ServiceListener.class);
+		ServiceListener kafkaA = mock(ServiceListener.class);
+		ServiceListener kafkaB = mock(ServiceListener.class);
+		MultiplexingServiceListener multiplexer =
+				new MultiplexingServiceListener();
+		multiplexer.add(ServiceFilter.builder("service:thor:rmi").build(),
+				thor);
+		multiplexer.add(ServiceFilter.builder("service:kafka:tcp").property(
+				"group", "A").build(), kafkaA);
+		multiplexer.add(ServiceFilter.builder("service:kafka:tcp").property(
+				"group", "B").build(), kafkaB);
+
+		ServiceEvent event = mock(ServiceEvent.class);
+		ServiceReference reference = reference("service:kafka:tcp", "B");
+		when(event.getReference()).thenReturn(reference);
+		multiplexer.serviceChanged(event);
+
+		verify(kafkaB).serviceChanged(event);
+		verify(kafkaA, never()).serviceChanged(event);
+		verify(thor, never()).serviceChanged(event);
+		assertTrue(multiplexer.match(reference("service:zookeeper:tcp",
+				"B")).isEmpty());
+	}
+
+	@Test
+	public void testFilter() {
+		MultiplexingServiceListener multiplexer =
+				new MultiplexingServiceListener();
+		Map<String, String> none = Collections.emptyMap();
+		multiplexer.add(ServiceFilter.builder("service:thor:rmi").build(),
+				mock(ServiceListener.class));
+		assertEquals(AutoConfigure.constructFilter("service:thor:rmi", none),
+				multiplexer.constructFilter());
+		multiplexer.add(ServiceFilter.builder("service:loki:rmi").build(),
+				mock(ServiceListener.class));
+		assertEquals(String.format("(|%s%s)", AutoConfigure.constructFilter(
+				"service:thor:rmi", none), AutoConfigure.constructFilter(
+				"service:loki:rmi", none)), multiplexer.constructFilter());
+	}
+
+	private Map<String, String> properties(String key, String value) {
+		Map<String, String> properties = new HashMap<>();
+		properties.put(key, value);
+		return properties;
+	}
+
+	private ServiceReference reference(String serviceType, String group) {
+		Map<String, String> properties = properties("group", group);
+		properties.put(ServiceScope.SERVICE_TYPE, serviceType);
+		ServiceReference reference = mock(ServiceReference.class);
+		when(reference.getProperties()).thenReturn(properties);
+		return reference;
+	}
+}
@@ -0,0 +1,113 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestPortReservation {
+
+	@Test
+	public void testClaim() throws Exception {
+		InetAddress address = InetAddress.getLoopbackAddress();
+		PortReservation reservation = PortReservation.reserve(address, null,
+				Arrays.asList("a", "b"));
+		int service = reservation.getPort(PortReservation.SERVICE_PORT);
+		Map<String, ServerSocketChannel> claimed = reservation.claim();
+		assertEquals(3, claimed.size());
+		reservation.close();
+		try {
+			assertTrue(claimed.get(PortReservation.SERVICE_PORT).isOpen());
+			assertEquals(service, claimed.get(
+					PortReservation.SERVICE_PORT).socket().getLocalPort());
+		} finally {
+			for (ServerSocketChannel channel : claimed.values()) {
+				channel.close();
+			}
+		}
+	}
+
+	@Test
+	public void testParseRange() {
+		assertNull(PortReservation.parseRange(null));
+		assertArrayEquals(new int[] { 20000, 20100 },
+				PortReservation.parseRange("20000-20100"));
+		assertArrayEquals(new int[] { 20000, 20000 },
+				PortReservation.parseRange("20000"));
+		for (String invalid : new String[] { "20100-20000", "0-10", "a-b",
+				"1-70000" }) {
+			try {
+				PortReservation.parseRange(invalid);
+				fail(invalid);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testReserve() throws Exception {
+		InetAddress address = InetAddress.getLoopbackAddress();
+		PortReservation reservation = PortReservation.reserve(address,
+				"47000-47100", Arrays.asList("a", "b"));
+		Set<Integer> ports = new HashSet<>();
+		for (String name : Arrays.asList(PortReservation.SERVICE_PORT, "a",
+				"b")) {
+			int port = reservation.getPort(name);
+			assertTrue(port >= 47000 && port <= 47100);
+			assertFalse(bindable(address, port));
+			ports.add(port);
+		}
+		assertEquals(3, ports.size());
+		reservation.close();
+		for (int port : ports) {
+			assertTrue(bindable(address, port));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testExhaustedRange() throws Exception {
+		InetAddress address = InetAddress.getLoopbackAddress();
+		PortReservation.reserve(address, "47200", Arrays.asList("a"));
+	}
+
+	private boolean bindable(InetAddress address, int port) {
+		try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+			channel.bind(new InetSocketAddress(address, port));
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+}
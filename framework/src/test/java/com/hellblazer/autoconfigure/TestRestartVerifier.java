@@ -0,0 +1,165 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.hellblazer.autoconfigure.configuration.RestartState;
+import com.hellblazer.autoconfigure.configuration.Template;
+import com.hellblazer.slp.ServiceURL;
+import com.hellblazer.utils.TemporaryDirectory;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestRestartVerifier {
+
+	@Test
+	public void testDrift() throws Exception {
+		try (TemporaryDirectory tempDirectory = new TemporaryDirectory(
+				"restart", "dir")) {
+			File group = new File(tempDirectory.directory, "group.stg");
+			write(group, "configuration() ::= <<a>>\n");
+			Template first = template(tempDirectory.directory, group, "first");
+			Template second = template(tempDirectory.directory, group,
+					"second");
+			write(first.generated, "a");
+			write(second.generated, "a");
+			RestartVerifier verifier = new RestartVerifier(Arrays.asList(first,
+					second), new TemplateGroupCache());
+			RestartState state = new RestartState();
+			verifier.record(state, Collections.<String, String> emptyMap());
+			assertEquals(2, state.generatedDigests.size());
+			assertEquals(1, state.templateDigests.size());
+
+			ForkJoinPool pool = new ForkJoinPool(2);
+			try {
+				Map<String, String> current = new HashMap<>();
+				assertTrue(verifier.drifted(state, pool, current).isEmpty());
+				assertEquals(state.generatedDigests, current);
+
+				write(second.generated, "edited by hand");
+				List<Template> drifted = verifier.drifted(state, pool, current);
+				assertEquals(Arrays.asList(second), drifted);
+
+				write(second.generated, "a");
+				write(group, "configuration() ::= <<b>>\n");
+				drifted = verifier.drifted(state, pool, current);
+				assertEquals(2, drifted.size());
+
+				assertTrue(first.generated.delete());
+				verifier.record(state, Collections.<String, String> emptyMap());
+				assertFalse(state.generatedDigests.containsKey(
+						first.generated.getAbsolutePath()));
+				assertTrue(verifier.drifted(state, pool,
+						current).contains(first));
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	@Test
+	public void testImportedGroupChange() throws Exception {
+		try (TemporaryDirectory tempDirectory = new TemporaryDirectory(
+				"restart", "dir")) {
+			File imported = new File(tempDirectory.directory, "imported.stg");
+			write(imported, "value() ::= <<a>>\n");
+			File group = new File(tempDirectory.directory, "group.stg");
+			write(group,
+					"import \"imported.stg\"\nconfiguration() ::= <<<value()> >>\n");
+			Template template = template(tempDirectory.directory, group,
+					"generated");
+			write(template.generated, "a");
+			RestartVerifier verifier = new RestartVerifier(Arrays.asList(
+					template), new TemplateGroupCache());
+			RestartState state = new RestartState();
+			verifier.record(state, Collections.<String, String> emptyMap());
+
+			ForkJoinPool pool = new ForkJoinPool(1);
+			try {
+				Map<String, String> current = new HashMap<>();
+				assertTrue(verifier.drifted(state, pool, current).isEmpty());
+
+				write(imported, "value() ::= <<b>>\n");
+				assertEquals("imported group change not detected",
+						Arrays.asList(template), verifier.drifted(state, pool,
+						current));
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	@Test
+	public void testVariables() throws Exception {
+		Map<String, String> properties = new HashMap<>();
+		properties.put("a", "b");
+		Service service = new Service(new ServiceURL(
+				"service:test:tcp://example.com:1"), properties);
+		Map<String, Object> variables = new HashMap<>();
+		variables.put("string", "value");
+		variables.put("number", 1);
+		variables.put("service", service);
+		variables.put("cluster", new Cluster<>(Arrays.asList(service)));
+		variables.put("supplied", "ignored");
+
+		RestartState state = new RestartState();
+		RestartVerifier.saveVariables(state, variables,
+				Collections.singleton("supplied"));
+		Map<String, Object> restored = RestartVerifier.restoreVariables(state);
+		assertEquals(4, restored.size());
+		assertEquals("value", restored.get("string"));
+		assertEquals("1", restored.get("number"));
+		Service restoredService = (Service) restored.get("service");
+		assertNotNull(restoredService);
+		assertEquals("example.com", restoredService.getHost());
+		assertEquals(1, restoredService.getPort());
+		assertEquals(properties, restoredService.getProperties());
+		Cluster<?> cluster = (Cluster<?>) restored.get("cluster");
+		assertEquals(1, cluster.getCardinality());
+	}
+
+	private Template template(File directory, File group, String name) {
+		Template template = new Template();
+		template.name = name;
+		template.templateGroup = group.getAbsolutePath();
+		template.generated = new File(directory, name);
+		return template;
+	}
+
+	private void write(File file, String content) throws IOException {
+		try (FileOutputStream fos = new FileOutputStream(file)) {
+			fos.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
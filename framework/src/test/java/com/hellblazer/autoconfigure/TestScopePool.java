@@ -0,0 +1,185 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.hellblazer.autoconfigure.configuration.Configuration;
+import com.hellblazer.autoconfigure.configuration.ServiceCollection;
+import com.hellblazer.autoconfigure.configuration.Template;
+import com.hellblazer.gossip.configuration.GossipConfiguration;
+import com.hellblazer.slp.ServiceListener;
+import com.hellblazer.slp.ServiceScope;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestScopePool {
+
+	private static class MockPool extends ScopePool {
+		@Override
+		protected ServiceScope construct(GossipConfiguration gossip) {
+			return mock(ServiceScope.class);
+		}
+	}
+
+	@Test
+	public void testSharedScope() throws Exception {
+		ScopePool pool = new MockPool();
+		GossipConfiguration first = gossip(new InetSocketAddress("localhost",
+				1), new InetSocketAddress("localhost", 2));
+		GossipConfiguration second = gossip(new InetSocketAddress("localhost",
+				2), new InetSocketAddress("localhost", 1));
+		ScopePool.Lease a = pool.acquire(first);
+		ScopePool.Lease b = pool.acquire(second);
+		assertSame(a.getScope(), b.getScope());
+		assertEquals(2, pool.getReferences(first));
+		ServiceScope scope = a.getScope();
+		verify(scope, times(1)).start();
+
+		a.release();
+		a.release();
+		verify(scope, never()).stop();
+		assertEquals(1, pool.getReferences(first));
+
+		b.release();
+		verify(scope, times(1)).stop();
+		assertEquals(0, pool.getReferences(first));
+	}
+
+	@Test
+	public void testDistinctSeeds() throws Exception {
+		ScopePool pool = new MockPool();
+		ScopePool.Lease a = pool.acquire(gossip(new InetSocketAddress(
+				"localhost", 1)));
+		ScopePool.Lease b = pool.acquire(gossip(new InetSocketAddress(
+				"localhost", 2)));
+		assertNotSame(a.getScope(), b.getScope());
+		a.release();
+		verify(a.getScope()).stop();
+		verify(b.getScope(), never()).stop();
+	}
+
+	@Test
+	public void testHostedShutdown() throws Exception {
+		ScopePool pool = new MockPool();
+		AutoConfigureHost host = new AutoConfigureHost(pool,
+				mock(ScheduledExecutorService.class));
+		AutoConfigure a = host.add(configuration("a.state"));
+		AutoConfigure b = host.add(configuration("b.state"));
+		ServiceScope scope = a.getDiscoveryScope();
+		assertSame(scope, b.getDiscoveryScope());
+		ArgumentCaptor<ServiceListener> listeners = ArgumentCaptor.forClass(
+				ServiceListener.class);
+
+		a.registerListeners();
+		verify(scope).addServiceListener(listeners.capture(), anyString());
+		ServiceListener aListener = listeners.getValue();
+		b.registerListeners();
+		verify(scope, times(2)).addServiceListener(listeners.capture(),
+				anyString());
+		ServiceListener bListener = listeners.getValue();
+
+		assertTrue(host.remove(a));
+		assertFalse(host.remove(a));
+		verify(scope).removeServiceListener(aListener);
+		verify(scope, never()).removeServiceListener(bListener);
+		verify(scope, never()).stop();
+		assertEquals(1, pool.getReferences(gossip()));
+		assertEquals(Arrays.asList(b), host.getHosted());
+
+		host.shutdown();
+		verify(scope).removeServiceListener(bListener);
+		verify(scope).stop();
+	}
+
+	@Test
+	public void testDistinctFiles() throws Exception {
+		ScopePool pool = new MockPool();
+		AutoConfigureHost host = new AutoConfigureHost(pool,
+				mock(ScheduledExecutorService.class));
+		Configuration first = configuration("a.state");
+		first.templates.add(template("a.properties"));
+		AutoConfigure a = host.add(first);
+		try {
+			host.add(configuration(new File("a.state").getAbsolutePath()));
+			fail("shared restart state accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		Configuration second = configuration("b.state");
+		second.templates.add(template("./a.properties"));
+		try {
+			host.add(second);
+			fail("shared generated file accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(1, pool.getReferences(gossip()));
+		assertEquals(Arrays.asList(a), host.getHosted());
+
+		assertTrue(host.remove(a));
+		host.add(configuration("a.state"));
+		host.shutdown();
+	}
+
+	private Configuration configuration(String restartStateFile) {
+		Configuration configuration = new Configuration();
+		configuration.gossip = gossip();
+		configuration.restartStateFile = restartStateFile;
+		ServiceCollection collection = new ServiceCollection();
+		collection.service = "service:test";
+		collection.variable = "test";
+		collection.cardinality = 1;
+		configuration.serviceCollections.add(collection);
+		return configuration;
+	}
+
+	private Template template(String generated) {
+		Template template = new Template();
+		template.name = generated;
+		template.templateGroup = "configurations/configuration1.stg";
+		template.generated = new File(generated);
+		return template;
+	}
+
+	private GossipConfiguration gossip(InetSocketAddress... seeds) {
+		GossipConfiguration gossip = new GossipConfiguration();
+		gossip.seeds = seeds.length == 0
+				? Collections.<InetSocketAddress> emptyList()
+				: Arrays.asList(seeds);
+		return gossip;
+	}
+}
@@ -0,0 +1,75 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.hellblazer.autoconfigure.configuration.ServiceCollection;
+import com.hellblazer.slp.ServiceScope;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestServiceFilter {
+
+	@Test
+	public void testCachedPerDefinition() {
+		ServiceCollection collection = new ServiceCollection();
+		collection.service = "service:kafka:tcp";
+		collection.properties.put("group", "A");
+		assertSame(collection.getFilter(), collection.getFilter());
+		assertEquals(collection.getFilter().toString(),
+				collection.constructFilter());
+	}
+
+	@Test
+	public void testEscaping() {
+		assertEquals("plain", ServiceFilter.escape("plain"));
+		assertEquals("a\\)b\\*c\\(d\\\\e", ServiceFilter.escape("a)b*c(d\\e"));
+	}
+
+	@Test
+	public void testFilterString() {
+		assertEquals(String.format("(%s=service:thor:rmi)",
+				ServiceScope.SERVICE_TYPE), ServiceFilter.builder(
+				"service:thor:rmi").build().toString());
+		ServiceFilter filter = ServiceFilter.builder(
+				"service:thor:rmi").property("b", "2").property("a",
+				"x)(y=*").build();
+		assertEquals(String.format(
+				"(&(%s=service:thor:rmi)(a=x\\)\\(y=\\*)(b=2))",
+				ServiceScope.SERVICE_TYPE), filter.toString());
+	}
+
+	@Test
+	public void testMatches() {
+		ServiceFilter filter = ServiceFilter.builder(
+				"service:thor:rmi").property("group", "a*").build();
+		Map<String, String> properties = new HashMap<>();
+		properties.put("group", "abc");
+		assertFalse("value treated as a wildcard", filter.matches(properties));
+		properties.put("group", "a*");
+		assertTrue(filter.matches(properties));
+	}
+}
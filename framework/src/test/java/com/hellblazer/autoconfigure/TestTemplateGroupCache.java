@@ -0,0 +1,205 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.stringtemplate.v4.STGroup;
+
+import com.hellblazer.utils.TemporaryDirectory;
+import com.hellblazer.utils.Utils;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestTemplateGroupCache {
+
+	@Test
+	public void testCompiledOnce() {
+		TemplateGroupCache cache = new TemplateGroupCache();
+		STGroup group = cache.get("configurations/configuration1.stg");
+		assertNotNull(group);
+		assertNotNull(group.getInstanceOf("configuration"));
+		assertSame(group, cache.get("configurations/configuration1.stg"));
+	}
+
+	@Test
+	public void testIndexed() throws Exception {
+		try (TemporaryDirectory tempDirectory = new TemporaryDirectory(
+				"template-cache", "dir")) {
+			File imported = new File(tempDirectory.directory, "imported.stg");
+			Files.write(imported.toPath(),
+					"greeting(name) ::= <<hello <name> >>\n".getBytes(
+							StandardCharsets.UTF_8));
+			File groupFile = new File(tempDirectory.directory, "group.stg");
+			Files.write(groupFile.toPath(),
+					"import \"imported.stg\"\nconfiguration(name) ::= <<<greeting(name)> >>\n".getBytes(
+							StandardCharsets.UTF_8));
+			String templateGroup = groupFile.getAbsolutePath();
+			final Properties index = new Properties();
+			index.setProperty(templateGroup + TemplateGroupCache.DIGEST,
+					TemplateGroupCache.digest(Arrays.asList(groupFile.toURI()
+							.toURL(), imported.toURI().toURL())));
+			index.setProperty(templateGroup + TemplateGroupCache.IMPORTS,
+					"imported.stg");
+			index.setProperty(templateGroup + ".configuration"
+					+ TemplateGroupCache.ARGUMENTS, "name");
+			final AtomicInteger compiled = new AtomicInteger();
+			TemplateGroupCache cache = new TemplateGroupCache() {
+				@Override
+				protected STGroup compile(URL url) {
+					compiled.incrementAndGet();
+					return super.compile(url);
+				}
+
+				@Override
+				protected Properties loadIndex() {
+					return index;
+				}
+			};
+			cache.prefill(templateGroup);
+			assertEquals(Collections.singleton("name"),
+					cache.getFormalArguments(templateGroup, "configuration"));
+			assertEquals(Arrays.asList(groupFile.toURI().toURL(),
+					imported.toURI().toURL()), cache.getSources(templateGroup));
+			assertEquals(0, compiled.get());
+
+			assertNull(cache.getFormalArguments(templateGroup, "missing"));
+			assertEquals(1, compiled.get());
+		}
+	}
+
+	@Test
+	public void testIndexIgnoredWhenImportModified() throws Exception {
+		try (TemporaryDirectory tempDirectory = new TemporaryDirectory(
+				"template-cache", "dir")) {
+			File imported = new File(tempDirectory.directory, "imported.stg");
+			Files.write(imported.toPath(),
+					"greeting(name) ::= <<hello <name> >>\n".getBytes(
+							StandardCharsets.UTF_8));
+			File groupFile = new File(tempDirectory.directory, "group.stg");
+			Files.write(groupFile.toPath(),
+					"import \"imported.stg\"\nconfiguration(name, port) ::= <<<greeting(name)>:<port> >>\n".getBytes(
+							StandardCharsets.UTF_8));
+			String templateGroup = groupFile.getAbsolutePath();
+			final Properties index = new Properties();
+			index.setProperty(templateGroup + TemplateGroupCache.DIGEST,
+					TemplateGroupCache.digest(Arrays.asList(groupFile.toURI()
+							.toURL(), imported.toURI().toURL())));
+			index.setProperty(templateGroup + TemplateGroupCache.IMPORTS,
+					"imported.stg");
+			index.setProperty(templateGroup + ".configuration"
+					+ TemplateGroupCache.ARGUMENTS, "name");
+			final AtomicInteger compiled = new AtomicInteger();
+			TemplateGroupCache cache = new TemplateGroupCache() {
+				@Override
+				protected STGroup compile(URL url) {
+					compiled.incrementAndGet();
+					return super.compile(url);
+				}
+
+				@Override
+				protected Properties loadIndex() {
+					return index;
+				}
+			};
+			assertEquals(Collections.singleton("name"),
+					cache.getFormalArguments(templateGroup, "configuration"));
+			assertEquals(0, compiled.get());
+
+			Files.write(imported.toPath(),
+					"greeting(name) ::= <<goodbye <name> >>\n".getBytes(
+							StandardCharsets.UTF_8));
+			imported.setLastModified(imported.lastModified() + 10000L);
+			assertEquals(new HashSet<>(Arrays.asList("name", "port")),
+					cache.getFormalArguments(templateGroup, "configuration"));
+			assertEquals(1, compiled.get());
+		}
+	}
+
+	@Test
+	public void testLocatedOnce() {
+		final AtomicInteger located = new AtomicInteger();
+		TemplateGroupCache cache = new TemplateGroupCache() {
+			@Override
+			protected URL locate(String templateGroup) {
+				located.incrementAndGet();
+				return super.locate(templateGroup);
+			}
+		};
+		for (int i = 0; i < 10; i++) {
+			cache.get("configurations/configuration1.stg");
+			cache.getFormalArguments("configurations/configuration1.stg",
+					"configuration");
+		}
+		assertEquals(1, located.get());
+	}
+
+	@Test
+	public void testRecompiledWhenImportModified() throws Exception {
+		try (TemporaryDirectory tempDirectory = new TemporaryDirectory(
+				"template-cache", "dir")) {
+			File imported = new File(tempDirectory.directory, "imported.stg");
+			Files.write(imported.toPath(),
+					"greeting(name) ::= <<hello <name> >>\n".getBytes(
+					StandardCharsets.UTF_8));
+			File groupFile = new File(tempDirectory.directory, "group.stg");
+			Files.write(groupFile.toPath(),
+					"import \"imported.stg\"\nconfiguration(name) ::= <<<greeting(name)> >>\n".getBytes(
+					StandardCharsets.UTF_8));
+			TemplateGroupCache cache = new TemplateGroupCache();
+			STGroup group = cache.get(groupFile.getAbsolutePath());
+			assertEquals(2, cache.getSources(
+					groupFile.getAbsolutePath()).size());
+			assertSame(group, cache.get(groupFile.getAbsolutePath()));
+			imported.setLastModified(imported.lastModified() + 10000L);
+			assertNotSame(group, cache.get(groupFile.getAbsolutePath()));
+		}
+	}
+
+	@Test
+	public void testRecompiledWhenModified() throws Exception {
+		try (TemporaryDirectory tempDirectory = new TemporaryDirectory(
+				"template-cache", "dir")) {
+			Utils.copyDirectory(new File("src/test/resources/configurations"),
+					tempDirectory.directory);
+			File groupFile = new File(tempDirectory.directory,
+					"configuration2.stg");
+			TemplateGroupCache cache = new TemplateGroupCache();
+			STGroup group = cache.get(groupFile.getAbsolutePath());
+			assertSame(group, cache.get(groupFile.getAbsolutePath()));
+			groupFile.setLastModified(groupFile.lastModified() + 10000L);
+			STGroup recompiled = cache.get(groupFile.getAbsolutePath());
+			assertNotSame(group, recompiled);
+			assertNotNull(recompiled.getInstanceOf("configuration"));
+		}
+	}
+}
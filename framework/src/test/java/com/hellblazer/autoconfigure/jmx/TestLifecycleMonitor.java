@@ -0,0 +1,95 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.hellblazer.autoconfigure.DiscoveryRendezvous;
+import com.hellblazer.autoconfigure.configuration.ServiceCollection;
+import com.hellblazer.autoconfigure.configuration.SingletonService;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestLifecycleMonitor {
+
+	@Test
+	public void testPhases() throws Exception {
+		ServiceCollection collection = new ServiceCollection();
+		collection.service = "service:kafka:tcp";
+		collection.variable = "brokers";
+		collection.cardinality = 3;
+		LifecycleMonitor monitor = new LifecycleMonitor(
+				Collections.<SingletonService> emptyList(),
+				Arrays.asList(collection));
+		assertEquals(Phase.INITIAL.name(), monitor.getPhase());
+		assertEquals(-1, monitor.getMillisBeforeCancellation());
+
+		monitor.enter(Phase.INTERFACE_RESOLUTION);
+		monitor.enter(Phase.PORT_ALLOCATION);
+		monitor.discovering(new DiscoveryRendezvous(3, null, null), 1,
+				TimeUnit.HOURS);
+		assertEquals(Phase.DISCOVERY_WAIT.name(), monitor.getPhase());
+		assertEquals(3, monitor.getRemainingServices());
+		assertTrue(monitor.getMillisBeforeCancellation() > 0);
+		assertEquals(Integer.valueOf(3), monitor.getExpectedServices().get(
+				"brokers [service:kafka:tcp]"));
+		assertEquals(Integer.valueOf(0), monitor.getDiscoveredServices().get(
+				"brokers [service:kafka:tcp]"));
+
+		monitor.configured();
+		Map<String, Long> durations = monitor.getPhaseDurations();
+		assertTrue(durations.containsKey(Phase.INTERFACE_RESOLUTION.name()));
+		assertTrue(durations.containsKey(Phase.PORT_ALLOCATION.name()));
+		assertTrue(durations.containsKey(Phase.DISCOVERY_WAIT.name()));
+		assertFalse(durations.containsKey(Phase.CONFIGURED.name()));
+	}
+
+	@Test
+	public void testRegistration() throws Exception {
+		LifecycleMonitor monitor = new LifecycleMonitor(
+				Collections.<SingletonService> emptyList(),
+				Collections.<ServiceCollection> emptyList());
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		int before = server.queryNames(new ObjectName(LifecycleMonitor.DOMAIN
+				+ ":*"), null).size();
+		monitor.register("service:test:tcp://%s:%s", "/tmp/test.state");
+		assertEquals(before + 1, server.queryNames(new ObjectName(
+				LifecycleMonitor.DOMAIN + ":*"), null).size());
+		ObjectName name = LifecycleMonitor.objectNameOf(
+				"service:test:tcp://%s:%s", "/tmp/test.state");
+		assertTrue(server.isRegistered(name));
+		assertEquals("service:test:tcp://%s:%s", ObjectName.unquote(
+				name.getKeyProperty("service")));
+		monitor.unregister();
+		assertFalse(server.isRegistered(name));
+		assertEquals(before, server.queryNames(new ObjectName(
+				LifecycleMonitor.DOMAIN + ":*"), null).size());
+	}
+}
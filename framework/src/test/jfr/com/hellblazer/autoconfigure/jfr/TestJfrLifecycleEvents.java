@@ -0,0 +1,92 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+import com.hellblazer.autoconfigure.LifecycleEvents;
+import com.hellblazer.autoconfigure.configuration.Template;
+
+/**
+ * @author hhildebrand
+ * 
+ */
+public class TestJfrLifecycleEvents {
+
+	@Test
+	public void testRecording() throws Exception {
+		LifecycleEvents events = LifecycleEvents.load();
+		assertTrue("Flight Recorder events not loaded",
+				events instanceof JfrLifecycleEvents);
+		UUID registration = UUID.randomUUID();
+		Template template = new Template();
+		template.template = "configuration";
+		template.templateGroup = "configuration.stg";
+		template.generated = new File("generated.txt");
+
+		Path dump = File.createTempFile("autoconfigure", ".jfr").toPath();
+		try {
+			try (Recording recording = new Recording()) {
+				recording.enable("com.hellblazer.autoconfigure.PropertiesPublished");
+				recording.enable("com.hellblazer.autoconfigure.TemplateRender");
+				recording.start();
+				events.propertiesPublished(registration, 3);
+				Object render = events.beginRender();
+				assertNotNull("render not recorded", render);
+				events.endRender(render, template, 42, true);
+				recording.stop();
+				recording.dump(dump);
+			}
+
+			List<String> names = new ArrayList<>();
+			for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+				String name = event.getEventType().getName();
+				names.add(name);
+				if ("com.hellblazer.autoconfigure.PropertiesPublished"
+						.equals(name)) {
+					assertEquals(3, event.getInt("properties"));
+					assertEquals(registration.toString(),
+							event.getString("registration"));
+				} else if ("com.hellblazer.autoconfigure.TemplateRender"
+						.equals(name)) {
+					assertEquals(42L, event.getLong("bytes"));
+					assertTrue(event.getBoolean("changed"));
+					assertEquals("configuration.stg",
+							event.getString("templateGroup"));
+				}
+			}
+			assertTrue(names
+					.contains("com.hellblazer.autoconfigure.PropertiesPublished"));
+			assertTrue(names
+					.contains("com.hellblazer.autoconfigure.TemplateRender"));
+		} finally {
+			dump.toFile().delete();
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.plugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STErrorListener;
+import org.stringtemplate.v4.STGroup;
+import org.stringtemplate.v4.STGroupFile;
+import org.stringtemplate.v4.misc.STMessage;
+
+import com.hellblazer.autoconfigure.TemplateGroupCache;
+import com.hellblazer.autoconfigure.configuration.Configuration;
+import com.hellblazer.autoconfigure.configuration.Template;
+import com.hellblazer.autoconfigure.configuration.YamlHelper;
+
+/**
+ * Compiles every template group referenced by the auto configure YAML files
+ * of the project, failing the build if a group does not compile or does not
+ * define its configured template. An index of the verified groups, the
+ * digests of their group files and imported group files, the imported group
+ * files and the formal arguments of their templates is packaged with the
+ * project. The index is read by the {@link TemplateGroupCache}.
+ *
+ * @author hhildebrand
+ *
+ */
+@Mojo(name = "compile-templates", defaultPhase = LifecyclePhase.PROCESS_CLASSES, threadSafe = true)
+public class CompileTemplatesMojo extends AbstractMojo {
+    public static final String INDEX = TemplateGroupCache.INDEX;
+
+    private static class ErrorCollector implements STErrorListener {
+	private final List<String> errors = new ArrayList<>();
+
+	@Override
+	public void compileTimeError(STMessage msg) {
+	    errors.add(msg.toString());
+	}
+
+	@Override
+	public void internalError(STMessage msg) {
+	    errors.add(msg.toString());
+	}
+
+	@Override
+	public void IOError(STMessage msg) {
+	    errors.add(msg.toString());
+	}
+
+	@Override
+	public void runTimeError(STMessage msg) {
+	    errors.add(msg.toString());
+	}
+    }
+
+    /**
+     * The project's base directory, used to resolve relative template group
+     * files
+     */
+    @Parameter(defaultValue = "${basedir}", readonly = true)
+    private File basedir;
+
+    /**
+     * The auto configure YAML files whose templates are compiled
+     */
+    @Parameter(required = true)
+    private File[] configurations;
+
+    /**
+     * The directory the template index is written to, and from which class
+     * path relative template group files are resolved
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+    private File outputDirectory;
+
+    /**
+     * Skip the compilation of the templates
+     */
+    @Parameter(property = "autoconfigure.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+	if (skip) {
+	    getLog().info("Skipping template compilation");
+	    return;
+	}
+	Properties index = new Properties();
+	List<String> failures = new ArrayList<>();
+	for (File yaml : configurations) {
+	    Configuration configuration;
+	    try {
+		configuration = YamlHelper.fromYaml(yaml);
+	    } catch (IOException e) {
+		throw new MojoExecutionException(String.format(
+			"Unable to read auto configuration [%s]", yaml), e);
+	    }
+	    for (Template template : configuration.templates) {
+		compile(yaml, template, index, failures);
+	    }
+	}
+	if (!failures.isEmpty()) {
+	    for (String failure : failures) {
+		getLog().error(failure);
+	    }
+	    throw new MojoFailureException(String.format(
+		    "%s template(s) failed to compile", failures.size()));
+	}
+	File indexFile = new File(outputDirectory, INDEX);
+	indexFile.getParentFile().mkdirs();
+	try (OutputStream os = new FileOutputStream(indexFile)) {
+	    index.store(os, "Compiled auto configure templates");
+	} catch (IOException e) {
+	    throw new MojoExecutionException(String.format(
+		    "Unable to write template index [%s]", indexFile), e);
+	}
+	getLog().info(
+		String.format("Compiled templates of %s configuration(s)",
+			configurations.length));
+    }
+
+    /**
+     * Compile the template group of the template, recording the result in the
+     * index
+     */
+    protected void compile(File yaml, Template template, Properties index,
+	    List<String> failures) throws MojoExecutionException {
+	URL url = locate(template.templateGroup);
+	if (url == null) {
+	    failures.add(String.format(
+		    "%s: template group file [%s] of template [%s] not found",
+		    yaml, template.templateGroup, template.name));
+	    return;
+	}
+	ErrorCollector errors = new ErrorCollector();
+	STGroup group = new STGroupFile(url, "UTF-8", '<', '>');
+	group.setListener(errors);
+	group.load();
+	for (STGroup imported : group.getImportedGroups()) {
+	    imported.load();
+	}
+	for (String error : errors.errors) {
+	    failures.add(String.format("%s: template group [%s]: %s", yaml,
+		    template.templateGroup, error));
+	}
+	ST st = group.getInstanceOf(template.template);
+	if (st == null) {
+	    failures.add(String.format(
+		    "%s: template [%s] is not defined in template group [%s]",
+		    yaml, template.template, template.templateGroup));
+	    return;
+	}
+	List<URL> sources = TemplateGroupCache.sourcesOf(url, group);
+	String imports = importsOf(sources);
+	if (imports == null) {
+	    getLog().warn(String.format(
+		    "%s: template group [%s] imports group files outside of "
+			    + "its directory and is not indexed", yaml,
+		    template.templateGroup));
+	    return;
+	}
+	String digest;
+	try {
+	    digest = TemplateGroupCache.digest(sources);
+	} catch (IOException e) {
+	    throw new MojoExecutionException(String.format(
+		    "Unable to read template group [%s]", url), e);
+	}
+	index.setProperty(template.templateGroup + TemplateGroupCache.DIGEST,
+		digest);
+	index.setProperty(template.templateGroup + TemplateGroupCache.IMPORTS,
+		imports);
+	index.setProperty(template.templateGroup + "." + template.template
+		+ TemplateGroupCache.ARGUMENTS, join(argumentsOf(st)));
+	getLog().debug(
+		String.format("Compiled template [%s] of group [%s]",
+			template.template, template.templateGroup));
+    }
+
+    /**
+     * @return the comma separated paths of the imported group files, in the
+     *         order they are digested, relative to the directory of the
+     *         template group file, or null if a group file is not within that
+     *         directory
+     */
+    protected String importsOf(List<URL> sources)
+	    throws MojoExecutionException {
+	List<String> imports = new ArrayList<>();
+	try {
+	    URI directory = sources.get(0).toURI().resolve(".");
+	    for (URL source : sources.subList(1, sources.size())) {
+		URI imported = directory.relativize(source.toURI());
+		if (imported.isAbsolute()) {
+		    return null;
+		}
+		imports.add(imported.toString());
+	    }
+	} catch (URISyntaxException e) {
+	    throw new MojoExecutionException(String.format(
+		    "Invalid template group file [%s]", sources.get(0)), e);
+	}
+	return join(imports);
+    }
+
+    /**
+     * @return the URL of the template group file, resolved as an absolute
+     *         file, relative to the project, or relative to the build output
+     *         directory
+     */
+    protected URL locate(String templateGroup) throws MojoExecutionException {
+	File file = new File(templateGroup);
+	if (!file.isAbsolute()) {
+	    file = new File(basedir, templateGroup);
+	    if (!file.exists()) {
+		file = new File(outputDirectory, templateGroup);
+	    }
+	}
+	if (!file.exists()) {
+	    return null;
+	}
+	try {
+	    return file.toURI().toURL();
+	} catch (MalformedURLException e) {
+	    throw new MojoExecutionException(String.format(
+		    "Invalid template group file [%s]", file), e);
+	}
+    }
+
+    private static Set<String> argumentsOf(ST st) {
+	Set<String> arguments = new TreeSet<>();
+	if (st.impl.formalArguments != null) {
+	    arguments.addAll(st.impl.formalArguments.keySet());
+	}
+	return arguments;
+    }
+
+    private static String join(Collection<String> values) {
+	StringBuilder builder = new StringBuilder();
+	for (String value : values) {
+	    if (builder.length() != 0) {
+		builder.append(',');
+	    }
+	    builder.append(value);
+	}
+	return builder.toString();
+    }
+}
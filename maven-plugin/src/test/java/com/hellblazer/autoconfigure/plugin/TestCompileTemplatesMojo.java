@@ -0,0 +1,153 @@
+/** (C) Copyright 2013 Hal Hildebrand, All Rights Reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hellblazer.autoconfigure.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.Test;
+import org.stringtemplate.v4.STGroup;
+
+import com.hellblazer.autoconfigure.TemplateGroupCache;
+import com.hellblazer.utils.TemporaryDirectory;
+
+/**
+ * @author hhildebrand
+ *
+ */
+public class TestCompileTemplatesMojo {
+
+	@Test
+	public void testFailures() throws Exception {
+		try (TemporaryDirectory tempDirectory = new TemporaryDirectory(
+				"compile-templates", "dir")) {
+			File groupFile = write(tempDirectory.directory, "group.stg",
+					"other(name) ::= <<<name> >>\n");
+			File yaml = write(tempDirectory.directory, "autoconfigure.yml",
+					yaml(groupFile.getAbsolutePath(), "missing.stg"));
+			CompileTemplatesMojo mojo = mojo(tempDirectory.directory, yaml);
+			try {
+				mojo.execute();
+				fail("Expected the templates to fail to compile");
+			} catch (MojoFailureException e) {
+				assertEquals("2 template(s) failed to compile", e.getMessage());
+			}
+			assertFalse(new File(new File(tempDirectory.directory,
+					"classes"), CompileTemplatesMojo.INDEX).exists());
+		}
+	}
+
+	@Test
+	public void testIndex() throws Exception {
+		try (TemporaryDirectory tempDirectory = new TemporaryDirectory(
+				"compile-templates", "dir")) {
+			File imported = write(tempDirectory.directory, "imported.stg",
+					"greeting(name) ::= <<hello <name> >>\n");
+			File groupFile = write(tempDirectory.directory, "group.stg",
+					"import \"imported.stg\"\nconfiguration(name, port) ::= <<<greeting(name)>:<port> >>\n");
+			String templateGroup = groupFile.getAbsolutePath();
+			File yaml = write(tempDirectory.directory, "autoconfigure.yml",
+					yaml(templateGroup));
+			mojo(tempDirectory.directory, yaml).execute();
+
+			final Properties index = new Properties();
+			try (InputStream is = new FileInputStream(new File(new File(
+					tempDirectory.directory, "classes"),
+					CompileTemplatesMojo.INDEX))) {
+				index.load(is);
+			}
+			assertEquals(TemplateGroupCache.digest(Arrays.asList(groupFile
+					.toURI().toURL(), imported.toURI().toURL())),
+					index.getProperty(templateGroup + TemplateGroupCache.DIGEST));
+			assertEquals("imported.stg",
+					index.getProperty(templateGroup + TemplateGroupCache.IMPORTS));
+			assertEquals("name,port", index.getProperty(templateGroup
+					+ ".configuration" + TemplateGroupCache.ARGUMENTS));
+
+			final AtomicInteger compiled = new AtomicInteger();
+			TemplateGroupCache cache = new TemplateGroupCache() {
+				@Override
+				protected STGroup compile(URL url) {
+					compiled.incrementAndGet();
+					return super.compile(url);
+				}
+
+				@Override
+				protected Properties loadIndex() {
+					return index;
+				}
+			};
+			assertEquals(new HashSet<>(Arrays.asList("name", "port")),
+					cache.getFormalArguments(templateGroup, "configuration"));
+			assertEquals(0, compiled.get());
+
+			Files.write(imported.toPath(),
+					"greeting(name) ::= <<goodbye <name> >>\n".getBytes(
+							StandardCharsets.UTF_8));
+			imported.setLastModified(imported.lastModified() + 10000L);
+			assertEquals(new HashSet<>(Arrays.asList("name", "port")),
+					cache.getFormalArguments(templateGroup, "configuration"));
+			assertEquals(1, compiled.get());
+		}
+	}
+
+	private static void set(Object target, String name, Object value)
+			throws Exception {
+		Field field = target.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(target, value);
+	}
+
+	private static File write(File directory, String name, String content)
+			throws Exception {
+		File file = new File(directory, name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static String yaml(String... templateGroups) {
+		StringBuilder builder = new StringBuilder("templates:\n");
+		for (String templateGroup : templateGroups) {
+			builder.append(String.format("  - name: %s\n"
+					+ "    templateGroup: \"%s\"\n"
+					+ "    generated: generated.properties\n",
+					new File(templateGroup).getName(), templateGroup));
+		}
+		return builder.toString();
+	}
+
+	private CompileTemplatesMojo mojo(File directory, File yaml)
+			throws Exception {
+		CompileTemplatesMojo mojo = new CompileTemplatesMojo();
+		set(mojo, "basedir", directory);
+		set(mojo, "configurations", new File[] { yaml });
+		set(mojo, "outputDirectory", new File(directory, "classes"));
+		return mojo;
+	}
+}
@@ -27,8 +27,8 @@ import org.stringtemplate.v4.STGroupFile;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.hellblazer.autoconfigure.configuration.YamlHelper;
 
 /**
  * A simple driver you can use to debug your templates without requiring the
@@ -45,11 +45,10 @@ public class TemplateDebugger {
 			System.out.println("Usage: TemplateDebugger <scenario file>+");
 			System.exit(1);
 		}
-		ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+		ObjectReader reader = YamlHelper.reader(TemplateDebugger.class);
 		for (String fileName : argv) {
 			FileInputStream yaml = new FileInputStream(fileName);
-			TemplateDebugger debugger = mapper.readValue(yaml,
-					TemplateDebugger.class);
+			TemplateDebugger debugger = reader.readValue(yaml);
 			System.out.println("======================================");
 			System.out.println(String.format("Rendered output of %s", yaml));
 			System.out.println("======================================");